@@ -24,5 +24,8 @@ public class MessageConstant {
     public static final String DISH_BE_RELATED_BY_SETMEAL = "当前菜品关联了套餐,不能删除";
     public static final String ORDER_STATUS_ERROR = "订单状态错误";
     public static final String ORDER_NOT_FOUND = "订单不存在";
+    public static final String ORDER_ITEM_OFF_SALE = "购物车中有已停售的商品，请重新选择";
+    public static final String SHOPPING_CART_ITEM_NOT_FOUND = "商品不存在，请刷新菜单后重试";
+    public static final String PAGE_CURSOR_INVALID = "分页游标无效";
 
 }
@@ -0,0 +1,16 @@
+package com.sky.constant;
+
+/**
+ * 分页相关常量
+ */
+public class PageConstant {
+
+    //游标分页默认每页记录数
+    public static final int DEFAULT_PAGE_SIZE = 10;
+
+    //游标分页每页最多记录数
+    public static final int MAX_PAGE_SIZE = 100;
+
+    //近似总数最多统计的行数，超过后不再继续计数
+    public static final int APPROXIMATE_COUNT_LIMIT = 10000;
+}
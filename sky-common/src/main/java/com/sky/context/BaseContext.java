@@ -1,19 +1,68 @@
 package com.sky.context;
 
+/**
+ * 当前线程的请求上下文
+ * 请求开始时由RequestContextInterceptor创建、请求结束时清理；提交到线程池的任务通过RequestContextTaskDecorator携带
+ */
 public class BaseContext {
 
-    public static ThreadLocal<Long> threadLocal = new ThreadLocal<>();
+    private static final ThreadLocal<RequestContext> threadLocal = new ThreadLocal<>();
+
+    public static RequestContext get() {
+        return threadLocal.get();
+    }
+
+    public static void set(RequestContext context) {
+        threadLocal.set(context);
+    }
+
+    public static void clear() {
+        threadLocal.remove();
+    }
 
     public static void setCurrentId(Long id) {
-        threadLocal.set(id);
+        getOrCreate().setCurrentId(id);
     }
 
     public static Long getCurrentId() {
-        return threadLocal.get();
+        RequestContext context = threadLocal.get();
+        return context == null ? null : context.getCurrentId();
     }
 
     public static void removeCurrentId() {
-        threadLocal.remove();
+        RequestContext context = threadLocal.get();
+        if (context != null) {
+            context.setCurrentId(null);
+        }
+    }
+
+    /**
+     * 管理端：当前登录的员工
+     * @param empId
+     */
+    public static void setEmpId(Long empId) {
+        RequestContext context = getOrCreate();
+        context.setEmpId(empId);
+        context.setCurrentId(empId);
+    }
+
+    /**
+     * 用户端：当前登录的微信用户
+     * @param userId
+     */
+    public static void setUserId(Long userId) {
+        RequestContext context = getOrCreate();
+        context.setUserId(userId);
+        context.setCurrentId(userId);
+    }
+
+    private static RequestContext getOrCreate() {
+        RequestContext context = threadLocal.get();
+        if (context == null) {
+            context = new RequestContext();
+            threadLocal.set(context);
+        }
+        return context;
     }
 
 }
@@ -0,0 +1,37 @@
+package com.sky.context;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 请求上下文：一次请求内的登录信息和请求标识
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RequestContext {
+
+    //当前登录者id（管理端为员工id，用户端为用户id），公共字段填充等使用
+    private Long currentId;
+
+    //用户端登录的微信用户id
+    private Long userId;
+
+    //管理端登录的员工id
+    private Long empId;
+
+    //请求标识，优先使用请求头X-Request-Id
+    private String requestId;
+
+    //请求开始时间(毫秒)
+    private long startTime;
+
+    /**
+     * 复制一份，交给其他线程使用，避免多个线程修改同一个对象
+     * @return
+     */
+    public RequestContext copy() {
+        return new RequestContext(currentId, userId, empId, requestId, startTime);
+    }
+}
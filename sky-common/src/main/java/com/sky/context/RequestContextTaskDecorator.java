@@ -0,0 +1,28 @@
+package com.sky.context;
+
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * 提交任务时复制当前线程的请求上下文，在执行任务的线程中恢复，执行完后还原该线程原来的上下文
+ * 平台线程池、虚拟线程、CallerRunsPolicy由提交线程自己执行时都适用
+ */
+public class RequestContextTaskDecorator implements TaskDecorator {
+
+    public Runnable decorate(Runnable runnable) {
+        RequestContext context = BaseContext.get();
+        RequestContext copy = context == null ? null : context.copy();
+        return () -> {
+            RequestContext previous = BaseContext.get();
+            BaseContext.set(copy);
+            try {
+                runnable.run();
+            } finally {
+                if (previous == null) {
+                    BaseContext.clear();
+                } else {
+                    BaseContext.set(previous);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,12 @@
+package com.sky.exception;
+
+/**
+ * 分页游标无效
+ */
+public class PageCursorException extends BaseException {
+
+    public PageCursorException(String msg) {
+        super(msg);
+    }
+
+}
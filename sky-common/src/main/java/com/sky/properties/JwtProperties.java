@@ -23,4 +23,9 @@ public class JwtProperties {
     private long userTtl;
     private String userTokenName;
 
+    /**
+     * 已校验令牌缓存的最大数量，命中时跳过验签和解析
+     */
+    private long verifiedCacheSize = 10000;
+
 }
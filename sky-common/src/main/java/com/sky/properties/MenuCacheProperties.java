@@ -0,0 +1,32 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.menu-cache")
+@Data
+public class MenuCacheProperties {
+
+    /**
+     * 本地(L1)缓存最多保存的key数量
+     */
+    private long maximumSize = 1000;
+
+    /**
+     * 本地(L1)缓存写入后的过期时间(秒)
+     */
+    private long expireSeconds = 300;
+
+    /**
+     * 跨节点失效通知使用的redis频道
+     */
+    private String channel = "menu_cache_evict";
+
+    /**
+     * 菜单快照最长多久重新加载一次(秒)，兜底防止修改通知丢失
+     */
+    private long snapshotMaxStaleSeconds = 60;
+
+}
@@ -0,0 +1,24 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order")
+@Data
+public class OrderProperties {
+
+    /**
+     * 配送费(元)，下单时服务端重新计算订单金额使用
+     */
+    private BigDecimal deliveryFee = new BigDecimal(6);
+
+    /**
+     * 每份商品的打包费(元)，打包费 = 商品总份数 * packFee
+     */
+    private int packFee = 1;
+
+}
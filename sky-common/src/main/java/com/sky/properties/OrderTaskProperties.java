@@ -0,0 +1,47 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order-task")
+@Data
+public class OrderTaskProperties {
+
+    /**
+     * 定时任务批量修改订单状态时每条sql处理的订单数
+     */
+    private int chunkSize = 1000;
+
+    /**
+     * 定时任务锁的过期时间(秒)，持锁节点宕机后其他节点最晚在此时间后可以接手
+     */
+    private long lockSeconds = 600;
+
+    /**
+     * 订单消息发件箱每批投递的消息数
+     */
+    private int outboxBatchSize = 100;
+
+    /**
+     * 发件箱消息认领后的租约时间(秒)，认领节点在此时间内未完成投递时其他节点可以重新认领
+     */
+    private long outboxLeaseSeconds = 30;
+
+    /**
+     * 发件箱消息最多投递次数，超过后标记为投递失败，不再投递
+     */
+    private int outboxMaxRetryCount = 10;
+
+    /**
+     * 发件箱消息投递失败后的最大重试间隔(秒)，重试间隔按1、2、4...秒递增直到该值
+     */
+    private long outboxMaxBackoffSeconds = 300;
+
+    /**
+     * 已投递的发件箱消息保留时间(小时)
+     */
+    private long outboxRetentionHours = 24;
+
+}
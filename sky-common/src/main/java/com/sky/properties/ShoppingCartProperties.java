@@ -0,0 +1,18 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.shopping-cart")
+@Data
+public class ShoppingCartProperties {
+
+    /**
+     * true：购物车保存在redis中，定时批量写回数据库
+     * false：每次加减直接用一条sql原子修改shopping_cart表
+     */
+    private boolean writeBehind = true;
+
+}
@@ -0,0 +1,22 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.snowflake")
+@Data
+public class SnowflakeProperties {
+
+    /**
+     * 节点id(0-1023)，多节点部署时每个节点必须不同
+     */
+    private long workerId = 0;
+
+    /**
+     * 允许的最大时钟回拨(毫秒)，回拨期间在上次的时间戳上继续生成，超过时拒绝生成
+     */
+    private long maxBackwardMillis = 5000;
+
+}
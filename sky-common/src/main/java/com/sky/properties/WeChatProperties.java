@@ -19,5 +19,6 @@ public class WeChatProperties {
     private String weChatPayCertFilePath; //平台证书
     private String notifyUrl; //支付成功的回调地址
     private String refundNotifyUrl; //退款成功的回调地址
+    private boolean asyncNotify = false; //支付回调解密后立即响应微信，业务处理交给线程池（处理失败时微信不会再重试）
 
 }
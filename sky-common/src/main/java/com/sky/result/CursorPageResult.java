@@ -0,0 +1,28 @@
+package com.sky.result;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 封装游标(keyset)分页查询结果
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPageResult implements Serializable {
+
+    private List records; //当前页数据集合
+
+    private String nextCursor; //下一页游标，没有下一页时为null
+
+    private boolean hasMore; //是否还有下一页
+
+    private Long total; //总记录数，只在第一页且请求近似总数时返回，否则为null
+
+    private Boolean totalExact; //total是否为精确值，达到统计上限时为false
+
+}
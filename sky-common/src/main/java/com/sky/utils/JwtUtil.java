@@ -2,13 +2,19 @@ package com.sky.utils;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class JwtUtil {
+
+    //每个秘钥对应的解析器，配置完成后只读，可以多线程共用
+    private static final Map<String, JwtParser> PARSERS = new ConcurrentHashMap<>();
+
     /**
      * 生成jwt
      * 使用Hs256算法, 私匙使用固定秘钥
@@ -46,12 +52,12 @@ public class JwtUtil {
      * @return
      */
     public static Claims parseJWT(String secretKey, String token) {
-        // 得到DefaultJwtParser
-        Claims claims = Jwts.parser()
+        // 得到DefaultJwtParser，同一个秘钥只创建一次
+        JwtParser parser = PARSERS.computeIfAbsent(secretKey, key -> Jwts.parser()
                 // 设置签名的秘钥
-                .setSigningKey(secretKey.getBytes(StandardCharsets.UTF_8))
-                // 设置需要解析的jwt
-                .parseClaimsJws(token).getBody();
+                .setSigningKey(key.getBytes(StandardCharsets.UTF_8)));
+        // 设置需要解析的jwt
+        Claims claims = parser.parseClaimsJws(token).getBody();
         return claims;
     }
 
@@ -0,0 +1,115 @@
+package com.sky.utils;
+
+import com.sky.constant.MessageConstant;
+import com.sky.constant.PageConstant;
+import com.sky.exception.PageCursorException;
+import com.sky.result.CursorPageResult;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 游标(keyset)分页工具
+ * 游标记录上一页最后一行的(排序时间, id)，下一页按 (时间, id) < (游标时间, 游标id) 向后查找，
+ * 不论翻到第几页都只扫描pageSize+1行；对客户端来说游标是不透明的字符串
+ * 排序时间为NULL的行（MySQL倒序时排在最后）游标中的时间为空，下一页只在NULL的行中按id继续查找
+ */
+public class PageCursorUtil {
+
+    private static final String SEPARATOR = "_";
+
+    /**
+     * 游标中的排序位置
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Cursor {
+        //为null表示上一页停在排序时间为NULL的行
+        private LocalDateTime time;
+        private Long id;
+    }
+
+    /**
+     * 生成游标
+     *
+     * @param time 排序时间，可以为null
+     * @param id   主键
+     * @return
+     */
+    public static String encode(LocalDateTime time, Long id) {
+        String raw = (time == null ? "" : time.toString()) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标
+     *
+     * @param cursor 客户端传回的游标，为空表示查询第一页
+     * @return 第一页时返回null
+     */
+    public static Cursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int index = raw.lastIndexOf(SEPARATOR);
+            String time = raw.substring(0, index);
+            return new Cursor(time.isEmpty() ? null : LocalDateTime.parse(time), Long.valueOf(raw.substring(index + 1)));
+        } catch (RuntimeException e) {
+            throw new PageCursorException(MessageConstant.PAGE_CURSOR_INVALID);
+        }
+    }
+
+    /**
+     * 规范每页记录数
+     *
+     * @param pageSize
+     * @return
+     */
+    public static int pageSize(int pageSize) {
+        if (pageSize <= 0) {
+            return PageConstant.DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(pageSize, PageConstant.MAX_PAGE_SIZE);
+    }
+
+    /**
+     * 由多查询一行(pageSize+1)的结果构造分页结果，多出的一行只用于判断是否还有下一页
+     *
+     * @param rows     按(时间, id)倒序查询出的最多pageSize+1行
+     * @param pageSize 每页记录数
+     * @param time     取排序时间
+     * @param id       取主键
+     * @return
+     */
+    public static <T> CursorPageResult build(List<T> rows, int pageSize,
+                                             Function<T, LocalDateTime> time, Function<T, Long> id) {
+        boolean hasMore = rows.size() > pageSize;
+        List<T> records = hasMore ? new ArrayList<>(rows.subList(0, pageSize)) : rows;
+
+        String nextCursor = null;
+        if (hasMore) {
+            T last = records.get(records.size() - 1);
+            nextCursor = encode(time.apply(last), id.apply(last));
+        }
+        return new CursorPageResult(records, nextCursor, hasMore, null, null);
+    }
+
+    /**
+     * 设置近似总数
+     *
+     * @param result
+     * @param count  最多统计到APPROXIMATE_COUNT_LIMIT的行数
+     */
+    public static void setApproximateTotal(CursorPageResult result, long count) {
+        result.setTotal(count);
+        result.setTotalExact(count < PageConstant.APPROXIMATE_COUNT_LIMIT);
+    }
+}
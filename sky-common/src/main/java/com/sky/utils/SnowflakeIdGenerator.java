@@ -0,0 +1,100 @@
+package com.sky.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 雪花算法id生成器：1位符号 + 41位毫秒时间戳 + 10位节点id + 12位序列号
+ * 时间戳和序列号保存在同一个AtomicLong中，用CAS更新，不加锁
+ * 同一毫秒序列号用完时等待到下一毫秒，时间戳不会超前于系统时钟；
+ * 时钟小幅回拨时在上一次的时间戳上继续使用剩余的序列号，用完后等待时钟追上，
+ * 回拨超过maxBackwardMillis时抛出异常
+ */
+public class SnowflakeIdGenerator {
+
+    //起始时间 2024-01-01 00:00:00 (UTC+8)，41位时间戳可以用到2093年
+    private static final long EPOCH = 1704038400000L;
+
+    private static final int WORKER_ID_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+
+    public static final long MAX_WORKER_ID = (1L << WORKER_ID_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = WORKER_ID_BITS + SEQUENCE_BITS;
+
+    private final long workerId;
+    private final long maxBackwardMillis;
+
+    //高位为相对EPOCH的时间戳，低12位为序列号
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdGenerator(long workerId, long maxBackwardMillis) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("workerId必须在0到" + MAX_WORKER_ID + "之间：" + workerId);
+        }
+        this.workerId = workerId;
+        this.maxBackwardMillis = maxBackwardMillis;
+    }
+
+    /**
+     * 生成下一个id
+     *
+     * @return
+     */
+    public long nextId() {
+        while (true) {
+            long last = state.get();
+            long lastTimestamp = last >>> SEQUENCE_BITS;
+            long now = currentTimeMillis() - EPOCH;
+
+            long next;
+            if (now > lastTimestamp) {
+                next = now << SEQUENCE_BITS;
+            } else {
+                if (lastTimestamp - now > maxBackwardMillis) {
+                    throw new IllegalStateException("系统时钟回拨" + (lastTimestamp - now) + "毫秒，拒绝生成id");
+                }
+                if ((last & SEQUENCE_MASK) == SEQUENCE_MASK) {
+                    //当前毫秒的序列号已用完，等待时钟走到下一毫秒，不借用未来的时间戳
+                    Thread.yield();
+                    continue;
+                }
+                //同一毫秒或时钟小幅回拨：沿用上一次的时间戳，序列号+1
+                next = last + 1;
+            }
+
+            if (state.compareAndSet(last, next)) {
+                return ((next >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT)
+                        | (workerId << SEQUENCE_BITS)
+                        | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * 当前时间（毫秒），测试时可以覆盖
+     *
+     * @return
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * 生成下一个id的字符串形式，用作订单号
+     *
+     * @return
+     */
+    public String nextIdStr() {
+        return String.valueOf(nextId());
+    }
+
+    /**
+     * 解析id中的生成时间（毫秒时间戳）
+     *
+     * @param id
+     * @return
+     */
+    public static long getTimestamp(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH;
+    }
+}
@@ -1,8 +1,11 @@
 package com.sky.dto;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Setter;
 
 import java.io.Serializable;
+import java.time.LocalDateTime;
 
 @Data
 public class EmployeePageQueryDTO implements Serializable {
@@ -16,4 +19,25 @@ public class EmployeePageQueryDTO implements Serializable {
     //每页显示记录数
     private int pageSize;
 
+    //游标分页：上一页返回的游标，为空表示查询第一页
+    private String cursor;
+
+    //游标分页：第一页是否返回近似总数
+    private boolean approximateTotal;
+
+    //游标分页：由cursor解析出的排序位置，只能由服务端通过seekAfter设置，不接受请求参数绑定
+    @Setter(AccessLevel.NONE)
+    private LocalDateTime cursorTime;
+
+    @Setter(AccessLevel.NONE)
+    private Long cursorId;
+
+    /**
+     * 游标分页：从(cursorTime, cursorId)之后开始查询
+     */
+    public void seekAfter(LocalDateTime cursorTime, Long cursorId) {
+        this.cursorTime = cursorTime;
+        this.cursorId = cursorId;
+    }
+
 }
@@ -1,6 +1,8 @@
 package com.sky.dto;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Setter;
 import org.springframework.format.annotation.DateTimeFormat;
 
 import java.io.Serializable;
@@ -27,4 +29,25 @@ public class OrdersPageQueryDTO implements Serializable {
 
     private Long userId;
 
+    //游标分页：上一页返回的游标，为空表示查询第一页
+    private String cursor;
+
+    //游标分页：第一页是否返回近似总数
+    private boolean approximateTotal;
+
+    //游标分页：由cursor解析出的排序位置，只能由服务端通过seekAfter设置，不接受请求参数绑定
+    @Setter(AccessLevel.NONE)
+    private LocalDateTime cursorTime;
+
+    @Setter(AccessLevel.NONE)
+    private Long cursorId;
+
+    /**
+     * 游标分页：从(cursorTime, cursorId)之后开始查询
+     */
+    public void seekAfter(LocalDateTime cursorTime, Long cursorId) {
+        this.cursorTime = cursorTime;
+        this.cursorId = cursorId;
+    }
+
 }
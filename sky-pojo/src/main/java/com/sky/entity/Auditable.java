@@ -0,0 +1,18 @@
+package com.sky.entity;
+
+import java.time.LocalDateTime;
+
+/**
+ * 带公共审计字段(创建/修改时间、创建/修改人)的实体，由AutoFill切面直接调用setter填充
+ */
+public interface Auditable {
+
+    void setCreateTime(LocalDateTime createTime);
+
+    void setUpdateTime(LocalDateTime updateTime);
+
+    void setCreateUser(Long createUser);
+
+    void setUpdateUser(Long updateUser);
+
+}
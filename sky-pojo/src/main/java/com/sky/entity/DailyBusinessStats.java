@@ -0,0 +1,72 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 每日营业数据汇总（daily_business_stats）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyBusinessStats implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    //日期（按下单时间/注册时间归属）
+    private LocalDate date;
+
+    //营业额（已完成订单金额）
+    private Double turnover;
+
+    //订单总数
+    private Integer orderCount;
+
+    //有效订单数（已完成）
+    private Integer validOrderCount;
+
+    //新增用户数
+    private Integer newUsers;
+
+    //各状态订单数 1待付款 2待接单 3已接单 4派送中 5已完成 6已取消
+    private Integer pendingPaymentCount;
+
+    private Integer toBeConfirmedCount;
+
+    private Integer confirmedCount;
+
+    private Integer deliveryInProgressCount;
+
+    private Integer completedCount;
+
+    private Integer cancelledCount;
+
+    //汇总时间
+    private LocalDateTime updateTime;
+
+    /**
+     * 没有任何订单和新增用户的一天
+     */
+    public static DailyBusinessStats empty(LocalDate date) {
+        return DailyBusinessStats.builder()
+                .date(date)
+                .turnover(0.0)
+                .orderCount(0)
+                .validOrderCount(0)
+                .newUsers(0)
+                .pendingPaymentCount(0)
+                .toBeConfirmedCount(0)
+                .confirmedCount(0)
+                .deliveryInProgressCount(0)
+                .completedCount(0)
+                .cancelledCount(0)
+                .build();
+    }
+}
@@ -0,0 +1,64 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 订单消息发件箱（order_outbox）：和订单状态在同一个事务中写入，由中继任务投递
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderOutbox implements Serializable {
+
+    /**
+     * 待投递
+     */
+    public static final Integer PENDING = 0;
+
+    /**
+     * 已投递
+     */
+    public static final Integer DELIVERED = 1;
+
+    /**
+     * 投递失败（超过最大重试次数，不再投递）
+     */
+    public static final Integer FAILED = 2;
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    //事件类型，对应OrderEventType
+    private String eventType;
+
+    //订单id
+    private Long orderId;
+
+    //订单号
+    private String number;
+
+    //投递状态 0待投递 1已投递 2投递失败
+    private Integer status;
+
+    //投递失败次数
+    private Integer retryCount;
+
+    //认领本条消息的中继批次
+    private String leaseOwner;
+
+    //认领租约到期时间，到期前其他节点不会重复认领；投递失败后表示下次重试的时间
+    private LocalDateTime leaseUntil;
+
+    private LocalDateTime createTime;
+
+    //投递时间
+    private LocalDateTime deliverTime;
+}
@@ -17,6 +17,9 @@ import java.util.List;
 @AllArgsConstructor
 public class DishVO implements Serializable {
 
+    //固定为增加createTime之前的默认值，redis中已有的dish_*缓存仍能反序列化
+    private static final long serialVersionUID = -679182091693081931L;
+
     private Long id;
     //菜品名称
     private String name;
@@ -30,6 +33,8 @@ public class DishVO implements Serializable {
     private String description;
     //0 停售 1 起售
     private Integer status;
+    //创建时间
+    private LocalDateTime createTime;
     //更新时间
     private LocalDateTime updateTime;
     //分类名称
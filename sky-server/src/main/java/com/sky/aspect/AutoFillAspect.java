@@ -3,18 +3,21 @@ package com.sky.aspect;
 import com.sky.annotation.AutoFill;
 import com.sky.constant.AutoFillConstant;
 import com.sky.context.BaseContext;
+import com.sky.entity.Auditable;
 import com.sky.enumeration.OperationType;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.JoinPoint;
-import org.aspectj.lang.Signature;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
 import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.stereotype.Component;
 
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.time.LocalDateTime;
+import java.util.Collection;
 
 /**
  * 自定义切面，实现公共字段自动填充处理
@@ -24,6 +27,16 @@ import java.time.LocalDateTime;
 @Slf4j
 public class AutoFillAspect {
 
+    /**
+     * 未实现Auditable的实体按类缓存setter句柄，每个类只查找一次
+     */
+    private static final ClassValue<Setters> SETTERS = new ClassValue<Setters>() {
+        @Override
+        protected Setters computeValue(Class<?> type) {
+            return new Setters(type);
+        }
+    };
+
     /**
      * 切入点
      */
@@ -33,55 +46,94 @@ public class AutoFillAspect {
     //前置通知
     @Before("autoFillPointCut()")
     public void autoFill(JoinPoint joinPoint) {
-        log.info("开始公共字段自动填充...");
-
         // 获取被拦截方法上数据库操作类型
         MethodSignature signature = (MethodSignature) joinPoint.getSignature();
         AutoFill autoFill = signature.getMethod().getAnnotation(AutoFill.class);
         OperationType operationType = autoFill.value(); //获取数据库操作类型
 
-        // 获取被拦截方法的参数——实体对象
+        // 获取被拦截方法的参数——实体对象或实体集合
         Object[] args = joinPoint.getArgs();
-        if(args == null || args.length == 0) {
+        if(args == null || args.length == 0 || args[0] == null) {
             return; //没有参数，直接返回
         }
 
-        Object entity = args[0]; //获取第一个参数（约定为实体对象）
-        // 准备赋值数据（本案例中是时间和操作者id）
+        // 准备赋值数据（本案例中是时间和操作者id），同一批数据使用相同的值
         LocalDateTime now = LocalDateTime.now();
         Long currentId = BaseContext.getCurrentId();
+        boolean insert = operationType == OperationType.INSERT;
+        log.debug("公共字段自动填充：{}，{}", signature.getName(), operationType);
 
-        // 根据不同类型操作执行不同的反射赋值
-        if(operationType == OperationType.INSERT) {
-            try {
-                Method setCreateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_CREATE_TIME, LocalDateTime.class);
-                Method setCreateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_CREATE_USER, Long.class);
-                Method setUpdateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
-                Method setUpdateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_USER, Long.class);
-
-                //通过反射赋值
-                setCreateTime.invoke(entity, now);
-                setCreateUser.invoke(entity, currentId);
-                setUpdateTime.invoke(entity, now);
-                setUpdateUser.invoke(entity, currentId);
-            } catch (Exception e) {
-                e.printStackTrace();
+        Object arg = args[0]; //第一个参数约定为实体对象，批量操作时为实体集合
+        //目前标注@AutoFill的都是单个实体的方法（现有的insertBatch针对口味、套餐菜品，没有公共字段），
+        //集合分支为以后给带公共字段的批量方法标注@AutoFill预留
+        if (arg instanceof Collection) {
+            for (Object entity : (Collection<?>) arg) {
+                fill(entity, insert, now, currentId);
             }
+        } else {
+            fill(arg, insert, now, currentId);
+        }
+    }
 
-        }else if(operationType == OperationType.UPDATE) {
-            try {
-                Method setUpdateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
-                Method setUpdateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_USER, Long.class);
-
-                //通过反射赋值
-                setUpdateTime.invoke(entity, now);
-                setUpdateUser.invoke(entity, currentId);
-            } catch (Exception e) {
-                e.printStackTrace();
+    private void fill(Object entity, boolean insert, LocalDateTime now, Long currentId) {
+        if (entity == null) {
+            return;
+        }
+        if (entity instanceof Auditable) {
+            Auditable auditable = (Auditable) entity;
+            if (insert) {
+                auditable.setCreateTime(now);
+                auditable.setCreateUser(currentId);
             }
-
+            auditable.setUpdateTime(now);
+            auditable.setUpdateUser(currentId);
+            return;
         }
 
+        Setters setters = SETTERS.get(entity.getClass());
+        try {
+            if (insert) {
+                invoke(setters.createTime, entity, now);
+                invoke(setters.createUser, entity, currentId);
+            }
+            invoke(setters.updateTime, entity, now);
+            invoke(setters.updateUser, entity, currentId);
+        } catch (Throwable e) {
+            log.error("公共字段自动填充失败：{}", entity.getClass().getName(), e);
+        }
     }
+
+    private static void invoke(MethodHandle setter, Object entity, Object value) throws Throwable {
+        if (setter != null) {
+            setter.invoke(entity, value);
+        }
     }
 
+    /**
+     * 某个实体类的四个公共字段setter，不存在的为null
+     */
+    private static class Setters {
+        private final MethodHandle createTime;
+        private final MethodHandle createUser;
+        private final MethodHandle updateTime;
+        private final MethodHandle updateUser;
+
+        Setters(Class<?> type) {
+            createTime = find(type, AutoFillConstant.SET_CREATE_TIME, LocalDateTime.class);
+            createUser = find(type, AutoFillConstant.SET_CREATE_USER, Long.class);
+            updateTime = find(type, AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
+            updateUser = find(type, AutoFillConstant.SET_UPDATE_USER, Long.class);
+        }
+
+        private static MethodHandle find(Class<?> type, String name, Class<?> paramType) {
+            try {
+                return MethodHandles.publicLookup()
+                        .findVirtual(type, name, MethodType.methodType(void.class, paramType))
+                        .asType(MethodType.methodType(void.class, Object.class, Object.class));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                log.warn("实体{}缺少公共字段方法{}，跳过填充", type.getName(), name);
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已校验的jwt令牌缓存：令牌 -> (id, 过期时间)
+ * 同一令牌的后续请求直接命中，跳过HMAC验签、base64解码和json解析；缓存项在令牌过期时一起过期
+ */
+@Component
+@Slf4j
+public class JwtTokenCache {
+
+    @Autowired
+    private JwtProperties jwtProperties;
+
+    private Cache<String, VerifiedToken> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(jwtProperties.getVerifiedCacheSize())
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+                        long remainMillis = Math.max(0, value.expireTime - System.currentTimeMillis());
+                        return TimeUnit.MILLISECONDS.toNanos(remainMillis);
+                    }
+
+                    public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * 校验令牌并取出其中的id，令牌无效或过期时抛出异常
+     *
+     * @param secretKey 秘钥
+     * @param token     令牌
+     * @param claimName id所在的声明，如 empId、userId，同时区分管理端和用户端的缓存
+     * @return
+     */
+    public Long verify(String secretKey, String token, String claimName) {
+        String key = claimName + ":" + token;
+        VerifiedToken verified = cache.getIfPresent(key);
+        if (verified != null && verified.expireTime > System.currentTimeMillis()) {
+            return verified.id;
+        }
+
+        Claims claims = JwtUtil.parseJWT(secretKey, token);
+        Long id = Long.valueOf(claims.get(claimName).toString());
+        Date expiration = claims.getExpiration();
+        cache.put(key, new VerifiedToken(id, expiration == null ? Long.MAX_VALUE : expiration.getTime()));
+        return id;
+    }
+
+    private static class VerifiedToken {
+        private final Long id;
+        private final long expireTime;
+
+        private VerifiedToken(Long id, long expireTime) {
+            this.id = id;
+            this.expireTime = expireTime;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.sky.properties.MenuCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * C端菜单两级缓存：本地Caffeine(L1) + Redis(L2)
+ * 失效时先删除redis中的key，再通过redis pub/sub通知所有节点清理本地缓存
+ */
+@Component
+@Slf4j
+public class MenuCache implements MessageListener {
+
+    @Autowired
+    private RedisTemplate redisTemplate;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private MenuCacheProperties menuCacheProperties;
+
+    private Cache<String, Object> localCache;
+
+    //L2(redis)命中/未命中次数，L1的统计由caffeine自己记录
+    private final LongAdder redisHitCount = new LongAdder();
+    private final LongAdder redisMissCount = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(menuCacheProperties.getMaximumSize())
+                .expireAfterWrite(menuCacheProperties.getExpireSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 依次查询本地缓存、redis，都没有命中时调用loader查询数据库并回填两级缓存
+     *
+     * @param key    缓存key，如 dish_{categoryId}
+     * @param loader 数据库查询
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Supplier<T> loader) {
+        Object value = localCache.getIfPresent(key);
+        if (value != null) {
+            return (T) value;
+        }
+
+        value = getFromRedis(key);
+        if (value != null) {
+            redisHitCount.increment();
+            localCache.put(key, value);
+            return (T) value;
+        }
+        redisMissCount.increment();
+
+        T result = loader.get();
+        if (result != null) {
+            redisTemplate.opsForValue().set(key, result);
+            localCache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * 清理缓存，并通知其他节点清理本地缓存
+     *
+     * @param pattern 如 dish_* 或 dish_1
+     */
+    public void evict(String pattern) {
+        Set keys = redisTemplate.keys(pattern);
+        if (keys != null && keys.size() > 0) {
+            redisTemplate.delete(keys);
+        }
+        evictLocal(pattern);
+        stringRedisTemplate.convertAndSend(menuCacheProperties.getChannel(), pattern);
+    }
+
+    /**
+     * 收到其他节点的失效通知
+     *
+     * @param message
+     * @param pattern
+     */
+    public void onMessage(Message message, byte[] pattern) {
+        String keyPattern = new String(message.getBody(), StandardCharsets.UTF_8);
+        log.debug("收到菜单缓存失效通知：{}", keyPattern);
+        evictLocal(keyPattern);
+    }
+
+    /**
+     * 缓存统计信息
+     *
+     * @return
+     */
+    public Map<String, Object> stats() {
+        CacheStats stats = localCache.stats();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("size", localCache.estimatedSize());
+        map.put("localHitCount", stats.hitCount());
+        map.put("localMissCount", stats.missCount());
+        map.put("localHitRate", stats.hitRate());
+        map.put("localEvictionCount", stats.evictionCount());
+        map.put("redisHitCount", redisHitCount.sum());
+        map.put("redisMissCount", redisMissCount.sum());
+        return map;
+    }
+
+    /**
+     * 读取redis缓存，类结构变化后旧值无法反序列化时删除该key，按未命中处理
+     *
+     * @param key
+     * @return
+     */
+    private Object getFromRedis(String key) {
+        try {
+            return redisTemplate.opsForValue().get(key);
+        } catch (SerializationException e) {
+            log.warn("菜单缓存反序列化失败，按未命中处理：{}", key, e);
+            redisTemplate.delete(key);
+            return null;
+        }
+    }
+
+    private void evictLocal(String pattern) {
+        if (pattern.endsWith("*")) {
+            String prefix = pattern.substring(0, pattern.length() - 1);
+            localCache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+        } else {
+            localCache.invalidate(pattern);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.sky.cache;
+
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.DishFlavorMapper;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.properties.MenuCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 菜品、套餐的内存快照，供购物车、下单、再来一单按id查询名称/图片/价格
+ * 本节点修改菜单后事务提交即重新加载；其他节点收到菜单缓存失效通知后在1秒内重新加载；
+ * 通知丢失时最多sky.menu-cache.snapshot-max-stale-seconds秒后定时重新加载
+ */
+@Component
+@Slf4j
+public class MenuSnapshot implements MessageListener, ApplicationRunner {
+
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private DishFlavorMapper dishFlavorMapper;
+    @Autowired
+    private SetmealMapper setmealMapper;
+    @Autowired
+    private MenuCacheProperties menuCacheProperties;
+
+    private volatile Snapshot snapshot = new Snapshot(0, Collections.emptyMap(), Collections.emptyMap(),
+            Collections.emptyMap(), LocalDateTime.MIN);
+
+    //收到其他节点的菜单修改通知，等待定时任务重新加载
+    private volatile boolean stale;
+
+    /**
+     * 启动时加载
+     * @param args
+     */
+    public void run(ApplicationArguments args) {
+        reload();
+    }
+
+    /**
+     * 根据id查询菜品，快照中没有时（刚新增）查询数据库
+     * @param id
+     * @return
+     */
+    public Dish getDish(Long id) {
+        Dish dish = snapshot.dishes.get(id);
+        return dish != null ? dish : dishMapper.getById(id);
+    }
+
+    /**
+     * 根据id查询套餐，快照中没有时（刚新增）查询数据库
+     * @param id
+     * @return
+     */
+    public Setmeal getSetmeal(Long id) {
+        Setmeal setmeal = snapshot.setmeals.get(id);
+        return setmeal != null ? setmeal : setmealMapper.getById(id);
+    }
+
+    /**
+     * 根据菜品id查询口味
+     * @param dishId
+     * @return
+     */
+    public List<DishFlavor> getFlavors(Long dishId) {
+        return snapshot.flavors.getOrDefault(dishId, Collections.emptyList());
+    }
+
+    public long getVersion() {
+        return snapshot.version;
+    }
+
+    /**
+     * 当前事务提交后重新加载（没有事务时立即加载），保证读到的是提交后的数据
+     */
+    public void refreshAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                public void afterCommit() {
+                    reload();
+                }
+            });
+        } else {
+            reload();
+        }
+    }
+
+    /**
+     * 其他节点修改了菜单
+     * @param message
+     * @param pattern
+     */
+    public void onMessage(Message message, byte[] pattern) {
+        stale = true;
+    }
+
+    /**
+     * 有修改通知或超过最大过期时间时重新加载
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void refreshIfStale() {
+        Duration age = Duration.between(snapshot.loadTime, LocalDateTime.now());
+        if (stale || age.getSeconds() >= menuCacheProperties.getSnapshotMaxStaleSeconds()) {
+            reload();
+        }
+    }
+
+    /**
+     * 快照统计信息
+     * @return
+     */
+    public Map<String, Object> stats() {
+        Snapshot current = snapshot;
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("version", current.version);
+        map.put("loadTime", current.loadTime);
+        map.put("dishCount", current.dishes.size());
+        map.put("setmealCount", current.setmeals.size());
+        return map;
+    }
+
+    private synchronized void reload() {
+        stale = false;
+        try {
+            Map<Long, Dish> dishes = dishMapper.list(new Dish()).stream()
+                    .collect(Collectors.toMap(Dish::getId, Function.identity()));
+            Map<Long, Setmeal> setmeals = setmealMapper.list(new Setmeal()).stream()
+                    .collect(Collectors.toMap(Setmeal::getId, Function.identity()));
+            Map<Long, List<DishFlavor>> flavors = dishFlavorMapper.list().stream()
+                    .collect(Collectors.groupingBy(DishFlavor::getDishId));
+
+            snapshot = new Snapshot(snapshot.version + 1, dishes, setmeals, flavors, LocalDateTime.now());
+            log.debug("菜单快照已加载，版本：{}，菜品{}个，套餐{}个", snapshot.version, dishes.size(), setmeals.size());
+        } catch (Exception e) {
+            //加载失败时继续使用旧快照，下次定时任务重试
+            stale = true;
+            log.error("菜单快照加载失败", e);
+        }
+    }
+
+    /**
+     * 一次加载的完整快照，整体替换，读取时不需要加锁
+     */
+    private static class Snapshot {
+        private final long version;
+        private final Map<Long, Dish> dishes;
+        private final Map<Long, Setmeal> setmeals;
+        private final Map<Long, List<DishFlavor>> flavors;
+        private final LocalDateTime loadTime;
+
+        private Snapshot(long version, Map<Long, Dish> dishes, Map<Long, Setmeal> setmeals,
+                         Map<Long, List<DishFlavor>> flavors, LocalDateTime loadTime) {
+            this.version = version;
+            this.dishes = dishes;
+            this.setmeals = setmeals;
+            this.flavors = flavors;
+            this.loadTime = loadTime;
+        }
+    }
+}
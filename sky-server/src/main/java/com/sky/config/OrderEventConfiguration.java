@@ -0,0 +1,38 @@
+package com.sky.config;
+
+import com.sky.context.RequestContextTaskDecorator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 订单事件配置类 用于创建订单事件线程池
+ * 开启虚拟线程模式时由VirtualThreadConfiguration创建
+ */
+@Configuration
+@Slf4j
+public class OrderEventConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "sky.virtual-threads", name = "enabled", havingValue = "false", matchIfMissing = true)
+    public ThreadPoolTaskExecutor orderEventExecutor() {
+        log.info("开始创建订单事件线程池...");
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(8);
+        executor.setQueueCapacity(10000);
+        executor.setThreadNamePrefix("order-event-");
+        //任务中可以读取提交时的请求上下文
+        executor.setTaskDecorator(new RequestContextTaskDecorator());
+        //队列满时由发布线程自己处理，不丢事件
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        //停机时处理完已提交的事件
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
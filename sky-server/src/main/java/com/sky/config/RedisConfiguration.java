@@ -1,11 +1,17 @@
 package com.sky.config;
 
 
+import com.sky.cache.MenuCache;
+import com.sky.cache.MenuSnapshot;
+import com.sky.properties.MenuCacheProperties;
+import com.sky.websocket.WebSocketBroadcaster;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
@@ -23,4 +29,31 @@ public class RedisConfiguration {
         return redisTemplate;
 
     }
+
+    /**
+     * redis消息监听容器，用于接收跨节点的pub/sub通知
+     * @param redisConnectionFactory
+     * @param menuCache
+     * @param menuSnapshot
+     * @param menuCacheProperties
+     * @param webSocketBroadcaster
+     * @return
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                       MenuCache menuCache,
+                                                                       MenuSnapshot menuSnapshot,
+                                                                       MenuCacheProperties menuCacheProperties,
+                                                                       WebSocketBroadcaster webSocketBroadcaster) {
+        log.info("开始创建redis消息监听容器...");
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        //菜单缓存失效通知
+        container.addMessageListener(menuCache, new ChannelTopic(menuCacheProperties.getChannel()));
+        //菜单修改后其他节点重新加载菜单快照
+        container.addMessageListener(menuSnapshot, new ChannelTopic(menuCacheProperties.getChannel()));
+        //集群内WebSocket群发
+        container.addMessageListener(webSocketBroadcaster, new ChannelTopic(WebSocketBroadcaster.CHANNEL));
+        return container;
+    }
 }
@@ -0,0 +1,128 @@
+package com.sky.config;
+
+import com.sky.context.RequestContextTaskDecorator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskSchedulingProperties;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 虚拟线程配置类（sky.virtual-threads.enabled=true 时生效，需要JDK 21）
+ * Tomcat请求处理、@Scheduled定时任务、订单事件线程池都改为虚拟线程，阻塞IO时不再占用平台线程
+ * 编译目标仍是旧版本JDK，虚拟线程相关API通过反射调用
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "sky.virtual-threads", name = "enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadConfiguration {
+
+    //停机时等待已提交任务完成的时间(秒)，和平台线程池一致
+    private static final int AWAIT_TERMINATION_SECONDS = 30;
+
+    //定时任务的调度线程数和平台线程模式一致(spring.task.scheduling.pool.size)，任务本身在虚拟线程上执行
+    @Autowired
+    private TaskSchedulingProperties taskSchedulingProperties;
+
+    /**
+     * Tomcat每个请求一个虚拟线程
+     * @return
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        log.info("Tomcat请求处理使用虚拟线程...");
+        ExecutorService executor = newThreadPerTaskExecutor(virtualThreadFactory("http-vt-"));
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    /**
+     * @Scheduled定时任务在虚拟线程上执行
+     * @return
+     */
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler() {
+        log.info("定时任务使用虚拟线程...");
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(taskSchedulingProperties.getPool().getSize());
+        scheduler.setThreadFactory(virtualThreadFactory("scheduling-vt-"));
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(AWAIT_TERMINATION_SECONDS);
+        return scheduler;
+    }
+
+    /**
+     * 订单事件每个任务一个虚拟线程，替代OrderEventConfiguration中的平台线程池
+     * @return
+     */
+    @Bean
+    public TaskExecutor orderEventExecutor() {
+        log.info("订单事件使用虚拟线程...");
+        VirtualThreadTaskExecutor executor = new VirtualThreadTaskExecutor(newThreadPerTaskExecutor(virtualThreadFactory("order-event-vt-")));
+        //任务中可以读取提交时的请求上下文
+        executor.setTaskDecorator(new RequestContextTaskDecorator());
+        return executor;
+    }
+
+    /**
+     * 停机时处理完已提交任务的虚拟线程执行器，和平台线程池的 waitForTasksToCompleteOnShutdown 行为一致
+     */
+    private static class VirtualThreadTaskExecutor extends TaskExecutorAdapter implements DisposableBean {
+
+        private final ExecutorService executorService;
+
+        VirtualThreadTaskExecutor(ExecutorService executorService) {
+            super(executorService);
+            this.executorService = executorService;
+        }
+
+        @Override
+        public void destroy() throws InterruptedException {
+            executorService.shutdown();
+            if (!executorService.awaitTermination(AWAIT_TERMINATION_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("订单事件虚拟线程执行器停机超时，未完成的任务将被中断");
+                executorService.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Thread.ofVirtual().name(prefix, 0).factory()
+     * @param prefix
+     * @return
+     */
+    private static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (Exception e) {
+            throw new IllegalStateException("虚拟线程需要JDK 21及以上，当前JDK：" + System.getProperty("java.version"), e);
+        }
+    }
+
+    /**
+     * Executors.newThreadPerTaskExecutor(threadFactory)
+     * @param threadFactory
+     * @return
+     */
+    private static ExecutorService newThreadPerTaskExecutor(ThreadFactory threadFactory) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+        } catch (Exception e) {
+            throw new IllegalStateException("虚拟线程需要JDK 21及以上，当前JDK：" + System.getProperty("java.version"), e);
+        }
+    }
+}
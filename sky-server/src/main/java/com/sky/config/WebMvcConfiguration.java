@@ -2,6 +2,7 @@ package com.sky.config;
 
 import com.sky.interceptor.JwtTokenAdminInterceptor;
 import com.sky.interceptor.JwtTokenUserInterceptor;
+import com.sky.interceptor.RequestContextInterceptor;
 import com.sky.json.JacksonObjectMapper;
 import com.sky.properties.JwtProperties;
 import lombok.extern.slf4j.Slf4j;
@@ -33,6 +34,8 @@ public class WebMvcConfiguration extends WebMvcConfigurationSupport {
     private JwtTokenAdminInterceptor jwtTokenAdminInterceptor;
     @Autowired
     private JwtTokenUserInterceptor jwtTokenUserInterceptor;
+    @Autowired
+    private RequestContextInterceptor requestContextInterceptor;
 
     /**
      * 注册自定义拦截器
@@ -41,6 +44,10 @@ public class WebMvcConfiguration extends WebMvcConfigurationSupport {
      */
     protected void addInterceptors(InterceptorRegistry registry) {
         log.info("开始注册自定义拦截器...");
+        //最先执行，创建请求上下文，请求结束后清理
+        registry.addInterceptor(requestContextInterceptor)
+                .addPathPatterns("/**");
+
         registry.addInterceptor(jwtTokenAdminInterceptor)
                 .addPathPatterns("/admin/**")
                 .excludePathPatterns("/admin/employee/login");
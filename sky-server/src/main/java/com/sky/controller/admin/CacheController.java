@@ -0,0 +1,51 @@
+package com.sky.controller.admin;
+
+
+import com.sky.cache.MenuCache;
+import com.sky.cache.MenuSnapshot;
+import com.sky.result.Result;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * 缓存监控
+ */
+@RestController
+@RequestMapping("/admin/cache")
+@Api(tags = "缓存监控接口")
+@Slf4j
+public class CacheController {
+
+    @Autowired
+    private MenuCache menuCache;
+    @Autowired
+    private MenuSnapshot menuSnapshot;
+
+    /**
+     * 查询菜单缓存命中/未命中/淘汰统计
+     * @return
+     */
+    @GetMapping("/stats")
+    @ApiOperation("菜单缓存统计")
+    public Result<Map<String, Object>> stats() {
+        return Result.success(menuCache.stats());
+    }
+
+    /**
+     * 查询菜单快照版本和加载时间
+     * @return
+     */
+    @GetMapping("/snapshot")
+    @ApiOperation("菜单快照信息")
+    public Result<Map<String, Object>> snapshot() {
+        return Result.success(menuSnapshot.stats());
+    }
+
+}
@@ -1,10 +1,12 @@
 package com.sky.controller.admin;
 
 
+import com.sky.cache.MenuCache;
 import com.sky.dto.DishDTO;
 import com.sky.dto.DishPageQueryDTO;
 import com.sky.entity.Dish;
 import com.sky.entity.DishFlavor;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
 import com.sky.result.Result;
 import com.sky.service.DishService;
@@ -13,12 +15,10 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.List;
-import java.util.Set;
 
 /**
  * 菜品管理
@@ -34,7 +34,7 @@ public class DishController {
     @Autowired
     private DishService dishService;
     @Autowired
-    private RedisTemplate redisTemplate;
+    private MenuCache menuCache;
 
     @PostMapping
     @ApiOperation("新增菜品")
@@ -61,6 +61,19 @@ public class DishController {
         return Result.success(pageResult);
     }
 
+    /**
+     * 菜品分页查询（游标分页）
+     * @param dishPageQueryDTO 第一页不传cursor，之后传上一页返回的nextCursor
+     * @return
+     */
+    @GetMapping("/page/cursor")
+    @ApiOperation("菜品分页查询（游标分页）")
+    public Result<CursorPageResult> pageByCursor(DishPageQueryDTO dishPageQueryDTO) {
+        log.info("菜品游标分页查询:{}", dishPageQueryDTO);
+        CursorPageResult cursorPageResult = dishService.pageQueryByCursor(dishPageQueryDTO);
+        return Result.success(cursorPageResult);
+    }
+
 
     /**
      * 批量删除菜品
@@ -140,12 +153,11 @@ public class DishController {
 
 
     /**
-     * 清理缓存
+     * 清理缓存（redis + 各节点本地缓存）
      * @param pattern
      */
     private void cleanCache(String pattern){
-        Set keys = redisTemplate.keys(pattern);
-        redisTemplate.delete(keys);
+        menuCache.evict(pattern);
     }
 
 
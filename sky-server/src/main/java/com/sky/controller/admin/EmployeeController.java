@@ -6,6 +6,7 @@ import com.sky.dto.EmployeeLoginDTO;
 import com.sky.dto.EmployeePageQueryDTO;
 import com.sky.entity.Employee;
 import com.sky.properties.JwtProperties;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
 import com.sky.result.Result;
 import com.sky.service.EmployeeService;
@@ -106,6 +107,20 @@ public class EmployeeController {
         return Result.success(pageResult);
     }
 
+    /**
+     * 员工分页查询（游标分页）
+     *
+     * @param employeePageQueryDTO 第一页不传cursor，之后传上一页返回的nextCursor
+     * @return
+     */
+    @GetMapping("/page/cursor")
+    @ApiOperation("员工分页查询（游标分页）")
+    public Result<CursorPageResult> pageByCursor(EmployeePageQueryDTO employeePageQueryDTO) {
+        log.info("员工游标分页查询，参数为：{}", employeePageQueryDTO);
+        CursorPageResult cursorPageResult = employeeService.pageQueryByCursor(employeePageQueryDTO);
+        return Result.success(cursorPageResult);
+    }
+
 
     /**
      * 启用或禁用员工账号
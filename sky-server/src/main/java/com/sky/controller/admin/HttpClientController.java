@@ -0,0 +1,33 @@
+package com.sky.controller.admin;
+
+import com.sky.result.Result;
+import com.sky.utils.HttpClientUtil;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * HttpClient连接池监控
+ */
+@RestController
+@RequestMapping("/admin/http-client")
+@Api(tags = "HttpClient监控接口")
+@Slf4j
+public class HttpClientController {
+
+    /**
+     * 查询连接池使用情况
+     * @return
+     */
+    @GetMapping("/stats")
+    @ApiOperation("连接池统计")
+    public Result<Map<String, Object>> stats() {
+        return Result.success(HttpClientUtil.getPoolStats());
+    }
+
+}
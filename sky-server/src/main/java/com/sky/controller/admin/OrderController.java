@@ -4,6 +4,7 @@ import com.sky.dto.OrdersCancelDTO;
 import com.sky.dto.OrdersConfirmDTO;
 import com.sky.dto.OrdersPageQueryDTO;
 import com.sky.dto.OrdersRejectionDTO;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
 import com.sky.result.Result;
 import com.sky.service.OrderService;
@@ -39,6 +40,19 @@ public class OrderController {
         PageResult pageResult = orderService.conditionSearch(ordersPageQueryDTO);
         return Result.success(pageResult);
     }
+
+    /**
+     * 订单搜索（游标分页）
+     *
+     * @param ordersPageQueryDTO 第一页不传cursor，之后传上一页返回的nextCursor
+     * @return
+     */
+    @GetMapping("/conditionSearch/cursor")
+    @ApiOperation("订单搜索（游标分页）")
+    public Result<CursorPageResult> conditionSearchByCursor(OrdersPageQueryDTO ordersPageQueryDTO) {
+        CursorPageResult cursorPageResult = orderService.conditionSearchByCursor(ordersPageQueryDTO);
+        return Result.success(cursorPageResult);
+    }
     /**
      * 各个状态的订单数量统计
      *
@@ -15,6 +15,7 @@ import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.Mapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import springfox.documentation.annotations.ApiIgnore;
 
@@ -101,7 +102,10 @@ public class ReportController {
 
 
     /**
-     * export报表
+     * export报表，默认导出最近30天
+     * @param begin
+     * @param end
+     * @param detail 是否导出订单明细
      * @param response
      * @return
      */
@@ -110,8 +114,15 @@ public class ReportController {
     //必须要传入HttpServletResponse，因为 Excel 文件不是在后端生成完保存到服务器，而是要通过 HTTP 直接返回给浏览器下载。
     //理解：Controller中方法传入的对象并不neccessarily是前端传过来的参数，也可以是后端Spring框架会自动注入上下文对象进来，
     //那么这里来说就是Spring从当前线程拿出 response传给了这个方法
-    public Result export(HttpServletResponse response) {
-        reportService.export(response);
+    public Result export(@DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+                         @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate end,
+                         @RequestParam(defaultValue = "false") boolean detail,
+                         HttpServletResponse response) {
+        if (begin == null || end == null) {
+            begin = LocalDate.now().minusDays(30);
+            end = LocalDate.now().minusDays(1);
+        }
+        reportService.export(begin, end, detail, response);
         return Result.success();
     }
 
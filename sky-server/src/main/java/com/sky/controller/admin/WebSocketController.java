@@ -0,0 +1,38 @@
+package com.sky.controller.admin;
+
+
+import com.sky.result.Result;
+import com.sky.websocket.WebSocketBroadcaster;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * WebSocket监控
+ */
+@RestController
+@RequestMapping("/admin/websocket")
+@Api(tags = "WebSocket监控接口")
+@Slf4j
+public class WebSocketController {
+
+    @Autowired
+    private WebSocketBroadcaster webSocketBroadcaster;
+
+    /**
+     * 查询本节点的连接数和消息投递统计
+     * @return
+     */
+    @GetMapping("/stats")
+    @ApiOperation("本节点WebSocket投递统计")
+    public Result<Map<String, Object>> stats() {
+        return Result.success(webSocketBroadcaster.stats());
+    }
+
+}
@@ -5,17 +5,24 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.sky.properties.WeChatProperties;
 import com.sky.service.OrderService;
-import com.wechat.pay.contrib.apache.httpclient.util.AesUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.entity.ContentType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedReader;
 import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * 支付回调相关接口
@@ -24,10 +31,34 @@ import java.util.HashMap;
 @RequestMapping("/notify")
 @Slf4j
 public class PayNotifyController {
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int TAG_LENGTH_BIT = 128;
+
+    //Cipher不是线程安全的，借出使用后放回池中复用
+    //不用ThreadLocal：虚拟线程模式下每个请求一个新线程，ThreadLocal中的实例无法复用
+    private static final Queue<Cipher> CIPHER_POOL = new ConcurrentLinkedQueue<>();
+
+    //给微信的成功响应，内容固定
+    private static final byte[] SUCCESS_RESPONSE;
+
+    static {
+        HashMap<Object, Object> map = new HashMap<>();
+        map.put("code", "SUCCESS");
+        map.put("message", "SUCCESS");
+        SUCCESS_RESPONSE = JSONUtils.toJSONString(map).getBytes(StandardCharsets.UTF_8);
+    }
+
     @Autowired
     private OrderService orderService;
     @Autowired
     private WeChatProperties weChatProperties;
+    @Autowired
+    @Qualifier("orderEventExecutor")
+    private TaskExecutor orderEventExecutor;
+
+    //apiV3Key生成的密钥，第一次回调时创建
+    private volatile SecretKeySpec aesKey;
 
     /**
      * 支付成功回调
@@ -36,48 +67,38 @@ public class PayNotifyController {
      */
     @RequestMapping("/paySuccess")
     public void paySuccessNotify(HttpServletRequest request, HttpServletResponse response) throws Exception {
-        //读取数据
-        String body = readData(request);
+        //直接从输入流解析
+        JSONObject body = JSON.parseObject(request.getInputStream(), StandardCharsets.UTF_8, JSONObject.class);
         log.info("支付成功回调：{}", body);
 
         //数据解密
-        String plainText = decryptData(body);
-        log.info("解密后的文本：{}", plainText);
+        JSONObject jsonObject = decryptData(body);
+        log.info("解密后的文本：{}", jsonObject);
 
-        JSONObject jsonObject = JSON.parseObject(plainText);
         String outTradeNo = jsonObject.getString("out_trade_no");//商户平台订单号
         String transactionId = jsonObject.getString("transaction_id");//微信支付交易号
 
         log.info("商户平台订单号：{}", outTradeNo);
         log.info("微信支付交易号：{}", transactionId);
 
-        //业务处理，修改订单状态、来单提醒
-        orderService.paySuccess(outTradeNo);
+        if (weChatProperties.isAsyncNotify()) {
+            //解密成功说明回调来自微信，先响应，业务处理交给线程池
+            orderEventExecutor.execute(() -> {
+                try {
+                    orderService.paySuccess(outTradeNo, transactionId);
+                } catch (Exception e) {
+                    log.error("支付成功回调处理失败，订单号：{}，微信支付交易号：{}", outTradeNo, transactionId, e);
+                }
+            });
+        } else {
+            //业务处理，修改订单状态、来单提醒
+            orderService.paySuccess(outTradeNo, transactionId);
+        }
 
         //给微信响应
         responseToWeixin(response);
     }
 
-    /**
-     * 读取数据
-     *
-     * @param request
-     * @return
-     * @throws Exception
-     */
-    private String readData(HttpServletRequest request) throws Exception {
-        BufferedReader reader = request.getReader();
-        StringBuilder result = new StringBuilder();
-        String line = null;
-        while ((line = reader.readLine()) != null) {
-            if (result.length() > 0) {
-                result.append("\n");
-            }
-            result.append(line);
-        }
-        return result.toString();
-    }
-
     /**
      * 数据解密
      *
@@ -85,20 +106,37 @@ public class PayNotifyController {
      * @return
      * @throws Exception
      */
-    private String decryptData(String body) throws Exception {
-        JSONObject resultObject = JSON.parseObject(body);
-        JSONObject resource = resultObject.getJSONObject("resource");
+    private JSONObject decryptData(JSONObject body) throws Exception {
+        JSONObject resource = body.getJSONObject("resource");
         String ciphertext = resource.getString("ciphertext");
         String nonce = resource.getString("nonce");
         String associatedData = resource.getString("associated_data");
 
-        AesUtil aesUtil = new AesUtil(weChatProperties.getApiV3Key().getBytes(StandardCharsets.UTF_8));
         //密文解密
-        String plainText = aesUtil.decryptToString(associatedData.getBytes(StandardCharsets.UTF_8),
-                nonce.getBytes(StandardCharsets.UTF_8),
-                ciphertext);
+        Cipher cipher = CIPHER_POOL.poll();
+        if (cipher == null) {
+            cipher = Cipher.getInstance(TRANSFORMATION);
+        }
+        byte[] plainText;
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, getAesKey(),
+                    new GCMParameterSpec(TAG_LENGTH_BIT, nonce.getBytes(StandardCharsets.UTF_8)));
+            if (associatedData != null) {
+                cipher.updateAAD(associatedData.getBytes(StandardCharsets.UTF_8));
+            }
+            plainText = cipher.doFinal(Base64.getDecoder().decode(ciphertext));
+        } finally {
+            CIPHER_POOL.offer(cipher);
+        }
+
+        return JSON.parseObject(plainText, JSONObject.class);
+    }
 
-        return plainText;
+    private SecretKeySpec getAesKey() {
+        if (aesKey == null) {
+            aesKey = new SecretKeySpec(weChatProperties.getApiV3Key().getBytes(StandardCharsets.UTF_8), "AES");
+        }
+        return aesKey;
     }
 
     /**
@@ -107,11 +145,8 @@ public class PayNotifyController {
      */
     private void responseToWeixin(HttpServletResponse response) throws Exception{
         response.setStatus(200);
-        HashMap<Object, Object> map = new HashMap<>();
-        map.put("code", "SUCCESS");
-        map.put("message", "SUCCESS");
         response.setHeader("Content-type", ContentType.APPLICATION_JSON.toString());
-        response.getOutputStream().write(JSONUtils.toJSONString(map).getBytes(StandardCharsets.UTF_8));
+        response.getOutputStream().write(SUCCESS_RESPONSE);
         response.flushBuffer();
     }
 }
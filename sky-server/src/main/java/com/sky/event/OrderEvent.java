@@ -0,0 +1,31 @@
+package com.sky.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 订单事件：订单状态变化后发布，由各订阅者在订单事件线程池中异步处理
+ * 发布方只需提供订单id或订单号，其余字段缺失时在分发前补全
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderEvent {
+
+    private OrderEventType type;
+
+    private Long orderId;
+
+    //订单号
+    private String number;
+
+    private Long userId;
+
+    //下单时间，营业数据按下单日期统计
+    private LocalDateTime orderTime;
+}
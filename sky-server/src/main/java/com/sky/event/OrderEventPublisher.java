@@ -0,0 +1,89 @@
+package com.sky.event;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.service.OrderOutboxService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 订单事件发布：事务提交后把事件交给订单事件线程池，在线程池中补全订单信息并分发给各个@EventListener
+ * 请求线程只负责写库，营业数据标记、支付超时登记等都不占用请求时间
+ * 来单提醒、催单需要可靠送达，在当前事务中写入发件箱，提交后立即触发一次投递，失败由定时中继重试
+ */
+@Component
+@Slf4j
+public class OrderEventPublisher {
+
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderOutboxService orderOutboxService;
+    @Autowired
+    @Qualifier("orderEventExecutor")
+    private TaskExecutor orderEventExecutor;
+
+    /**
+     * 发布订单事件，有事务时在事务提交后发布，回滚则丢弃
+     * @param event
+     */
+    public void publish(OrderEvent event) {
+        boolean outboxed = orderOutboxService.save(event);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                public void afterCommit() {
+                    dispatch(event, outboxed);
+                }
+            });
+        } else {
+            dispatch(event, outboxed);
+        }
+    }
+
+    private void dispatch(OrderEvent event, boolean outboxed) {
+        orderEventExecutor.execute(() -> {
+            try {
+                if (outboxed) {
+                    orderOutboxService.relayBatch();
+                }
+                if (!complete(event)) {
+                    log.warn("订单事件对应的订单不存在：{}", event);
+                    return;
+                }
+                applicationEventPublisher.publishEvent(event);
+            } catch (Exception e) {
+                log.error("订单事件处理失败：{}", event, e);
+            }
+        });
+    }
+
+    /**
+     * 补全订单id、订单号、下单时间，同一个事件只查询一次，所有订阅者共用
+     * @param event
+     * @return 订单是否存在
+     */
+    private boolean complete(OrderEvent event) {
+        if (event.getOrderId() != null && event.getNumber() != null && event.getOrderTime() != null) {
+            return true;
+        }
+        Orders orders = event.getOrderId() != null
+                ? orderMapper.getById(event.getOrderId())
+                : orderMapper.getByNumber(event.getNumber());
+        if (orders == null) {
+            return false;
+        }
+        event.setOrderId(orders.getId());
+        event.setNumber(orders.getNumber());
+        event.setUserId(orders.getUserId());
+        event.setOrderTime(orders.getOrderTime());
+        return true;
+    }
+}
@@ -0,0 +1,22 @@
+package com.sky.event;
+
+/**
+ * 订单事件类型
+ */
+public enum OrderEventType {
+
+    //用户下单
+    SUBMITTED,
+    //支付成功
+    PAID,
+    //商家接单
+    CONFIRMED,
+    //开始派送
+    DELIVERING,
+    //订单完成
+    COMPLETED,
+    //用户取消、商家拒单、商家取消
+    CANCELLED,
+    //用户催单
+    REMINDED
+}
@@ -0,0 +1,31 @@
+package com.sky.event;
+
+import com.sky.service.BusinessStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * 订单事件订阅：订单状态变化后标记下单日期的营业数据需要重新汇总
+ */
+@Component
+@Slf4j
+public class OrderStatsListener {
+
+    @Autowired
+    private BusinessStatsService businessStatsService;
+
+    @EventListener
+    public void onOrderEvent(OrderEvent event) {
+        if (event.getType() == OrderEventType.REMINDED) {
+            return;
+        }
+
+        try {
+            businessStatsService.markDirty(event.getOrderTime());
+        } catch (Exception e) {
+            log.error("标记营业数据失败：{}", event, e);
+        }
+    }
+}
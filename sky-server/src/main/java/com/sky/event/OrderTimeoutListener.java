@@ -0,0 +1,32 @@
+package com.sky.event;
+
+import com.sky.task.OrderTimeoutQueue;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * 订单事件订阅：下单后登记支付截止时间，支付后撤销登记
+ * 事件丢失（如节点宕机）时由OrderTimeoutQueue启动时的全量登记兜底
+ */
+@Component
+@Slf4j
+public class OrderTimeoutListener {
+
+    @Autowired
+    private OrderTimeoutQueue orderTimeoutQueue;
+
+    @EventListener
+    public void onOrderEvent(OrderEvent event) {
+        try {
+            if (event.getType() == OrderEventType.SUBMITTED) {
+                orderTimeoutQueue.schedule(event.getOrderId(), event.getOrderTime());
+            } else if (event.getType() == OrderEventType.PAID) {
+                orderTimeoutQueue.cancelSchedule(event.getOrderId());
+            }
+        } catch (Exception e) {
+            log.error("登记订单支付超时失败：{}", event, e);
+        }
+    }
+}
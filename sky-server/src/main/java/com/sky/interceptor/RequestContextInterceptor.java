@@ -0,0 +1,45 @@
+package com.sky.interceptor;
+
+import com.sky.context.BaseContext;
+import com.sky.context.RequestContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.UUID;
+
+/**
+ * 请求上下文拦截器：请求开始时创建上下文，请求结束后清理，避免线程复用时串到下一个请求
+ */
+@Component
+@Slf4j
+public class RequestContextInterceptor implements HandlerInterceptor {
+
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String requestId = request.getHeader(REQUEST_ID_HEADER);
+        if (!StringUtils.hasText(requestId)) {
+            requestId = UUID.randomUUID().toString().replace("-", "");
+        }
+        RequestContext context = new RequestContext();
+        context.setRequestId(requestId);
+        context.setStartTime(System.currentTimeMillis());
+        BaseContext.set(context);
+
+        response.setHeader(REQUEST_ID_HEADER, requestId);
+        return true;
+    }
+
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        RequestContext context = BaseContext.get();
+        if (context != null && log.isDebugEnabled()) {
+            log.debug("请求{} {}耗时{}ms", context.getRequestId(), request.getRequestURI(),
+                    System.currentTimeMillis() - context.getStartTime());
+        }
+        BaseContext.clear();
+    }
+}
@@ -0,0 +1,27 @@
+package com.sky.mapper;
+
+import com.sky.entity.DailyBusinessStats;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Mapper
+public interface DailyBusinessStatsMapper {
+
+    /**
+     * 查询指定日期范围内已汇总的数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Select("select * from daily_business_stats where date >= #{begin} and date <= #{end}")
+    List<DailyBusinessStats> list(LocalDate begin, LocalDate end);
+
+    /**
+     * 批量插入或覆盖汇总数据
+     * @param statsList
+     */
+    void upsertBatch(List<DailyBusinessStats> statsList);
+}
@@ -40,4 +40,19 @@ public interface DishFlavorMapper {
      */
     @Select("select * from dish_flavor where dish_id = #{dishId}")
     List<DishFlavor> getByDishId(Long dishId);
+
+
+    /**
+     * 根据菜品ids集合批量查询口味数据
+     * @param dishIds
+     * @return
+     */
+    List<DishFlavor> getByDishIds(List<Long> dishIds);
+
+    /**
+     * 查询全部口味数据
+     * @return
+     */
+    @Select("select * from dish_flavor")
+    List<DishFlavor> list();
 }
@@ -39,6 +39,13 @@ public interface DishMapper {
      */
     Page<DishVO> pageQuery(DishPageQueryDTO dishPageQueryDTO);
 
+    /**
+     * 按分页查询条件统计菜品数，最多统计到PageConstant.APPROXIMATE_COUNT_LIMIT
+     * @param dishPageQueryDTO
+     * @return
+     */
+    Long countApproximate(DishPageQueryDTO dishPageQueryDTO);
+
     /**
      * 根据主键查询菜品
      * @param id
@@ -38,6 +38,13 @@ public interface EmployeeMapper {
      */
     Page<Employee> pageQuery(EmployeePageQueryDTO employeePageQueryDTO);
 
+    /**
+     * 按分页查询条件统计员工数，最多统计到PageConstant.APPROXIMATE_COUNT_LIMIT
+     * @param employeePageQueryDTO
+     * @return
+     */
+    Long countApproximate(EmployeePageQueryDTO employeePageQueryDTO);
+
 
     /**
      * 根据主键动态修改员工状态
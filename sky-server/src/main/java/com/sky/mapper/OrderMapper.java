@@ -3,10 +3,13 @@ package com.sky.mapper;
 import com.github.pagehelper.Page;
 import com.sky.dto.GoodsSalesDTO;
 import com.sky.dto.OrdersPageQueryDTO;
+import com.sky.entity.DailyBusinessStats;
 import com.sky.entity.Orders;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Select;
-import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -37,13 +40,19 @@ public interface OrderMapper {
 
 
     /**
-     * 替换真实的微信支付更新支付数据库状态
-     * @param orderStatus
-     * @param orderPaidStatus
+     * 订单状态为fromStatus、支付状态为fromPayStatus的订单修改为指定的订单状态和支付状态，
+     * 已支付或已取消的订单不会被修改
+     * @param orderNumber
+     * @param userId 下单用户，为null时不校验（微信支付回调）
+     * @param fromStatus 当前订单状态（待付款）
+     * @param fromPayStatus 当前支付状态（未支付）
+     * @param status 修改后的订单状态
+     * @param payStatus 修改后的支付状态
+     * @param checkoutTime
+     * @return 修改的行数，0表示订单不存在、不属于该用户、已经支付过或已取消
      */
-    @Update("update orders set status = #{orderStatus},pay_status = #{orderPaidStatus},checkout_time = #{check_out_time} " +
-            "where number = #{orderNumber}")
-    void updateStatus(Integer orderStatus, Integer orderPaidStatus, LocalDateTime check_out_time,String orderNumber);
+    int updatePaid(String orderNumber, Long userId, Integer fromStatus, Integer fromPayStatus,
+                   Integer status, Integer payStatus, LocalDateTime checkoutTime);
 
     /**
      * 分页条件查询并按下单时间排序
@@ -51,6 +60,13 @@ public interface OrderMapper {
      */
     Page<Orders> pageQuery(OrdersPageQueryDTO ordersPageQueryDTO);
 
+    /**
+     * 按分页查询条件统计订单数，最多统计到PageConstant.APPROXIMATE_COUNT_LIMIT
+     * @param ordersPageQueryDTO
+     * @return
+     */
+    Long countApproximate(OrdersPageQueryDTO ordersPageQueryDTO);
+
 
     /**
      * 根据id查询订单
@@ -71,32 +87,35 @@ public interface OrderMapper {
 
 
     /**
-     * 根据状态和创建时间查询订单列表
-     * @param status
-     * @param orderTime
-     * @return
+     * 批量取消订单，只更新仍处于指定状态的订单（状态已变化的订单不受影响）
+     * @param ids
+     * @param status 期望的当前状态
+     * @param cancelReason
+     * @param cancelTime
+     * @return 实际取消的订单数
      */
-    @Select("select * from orders where status = #{status} and order_time < #{orderTime}")
-    List<Orders> getByStatusAndOrderTimeLT(Integer status, LocalDateTime orderTime);
-
+    int cancelByIds(List<Long> ids, Integer status, String cancelReason, LocalDateTime cancelTime);
 
 
     /**
-     * 根据订单号和用户id查询订单
-     * @param orderNumber
-     * @param userId
-     * @return
-     */@Select("select * from orders where number = #{orderNumber} and user_id = #{userId}")
-    Orders getByNumberAndUserId(String orderNumber, Long userId);
-
+     * 把下单时间早于指定时间、处于某状态的订单批量改为完成，每次最多处理limit条
+     * @param status 当前状态
+     * @param orderTime
+     * @param deliveryTime
+     * @param limit
+     * @return 实际修改的订单数
+     */
+    int completeByStatusAndOrderTimeLT(Integer status, LocalDateTime orderTime, LocalDateTime deliveryTime, int limit);
 
 
     /**
-     * 统计指定时间段内的营业额
-     * @param map
+     * 查询指定状态的订单id和下单时间
+     * @param status
      * @return
      */
-    Double sumByMap(Map map);
+    @Select("select id, order_time from orders where status = #{status}")
+    List<Orders> getIdAndOrderTimeByStatus(Integer status);
+
 
 
     /**
@@ -117,4 +136,24 @@ public interface OrderMapper {
     List<GoodsSalesDTO> getTop10(LocalDateTime begin, LocalDateTime end);
 
 
+    /**
+     * 按天分组统计指定时间段内的订单总数、有效订单数、营业额和各状态订单数
+     * @param begin
+     * @param end
+     * @return 只包含有订单的日期
+     */
+    List<DailyBusinessStats> getDailyStatistics(LocalDateTime begin, LocalDateTime end);
+
+
+    /**
+     * 流式查询指定时间段内的订单（MySQL驱动逐行返回），每一行回调一次handler，用于大数据量导出
+     * @param begin
+     * @param end
+     * @param handler
+     */
+    @Select("select * from orders where order_time >= #{begin} and order_time <= #{end} order by order_time")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    void streamByOrderTime(LocalDateTime begin, LocalDateTime end, ResultHandler<Orders> handler);
+
+
 }
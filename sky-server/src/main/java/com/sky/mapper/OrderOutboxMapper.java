@@ -0,0 +1,66 @@
+package com.sky.mapper;
+
+import com.sky.entity.OrderOutbox;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface OrderOutboxMapper {
+
+    /**
+     * 写入一条待投递消息，订单id和订单号从orders表补全（只知道其中一个时也只需一条sql）
+     * @param orderOutbox
+     */
+    void insert(OrderOutbox orderOutbox);
+
+    /**
+     * 锁定一批未被认领（或租约已过期）的待投递消息，其他节点跳过已被锁定的行
+     * @param now
+     * @param limit
+     * @return
+     */
+    @Select("select * from order_outbox where status = 0 and (lease_until is null or lease_until < #{now}) " +
+            "order by id limit #{limit} for update skip locked")
+    List<OrderOutbox> lockPending(LocalDateTime now, int limit);
+
+    /**
+     * 认领已锁定的消息：写入租约，提交后行锁即释放
+     * @param ids
+     * @param leaseOwner
+     * @param leaseUntil
+     */
+    void claim(List<Long> ids, String leaseOwner, LocalDateTime leaseUntil);
+
+    /**
+     * 批量标记为已投递，只处理本批次认领的消息
+     * @param ids
+     * @param leaseOwner
+     * @param deliverTime
+     */
+    void markDelivered(List<Long> ids, String leaseOwner, LocalDateTime deliverTime);
+
+    /**
+     * 投递失败：次数+1并释放租约，到retryTime之后才会被重新认领
+     * @param id
+     * @param leaseOwner
+     * @param status 仍为待投递，或超过最大次数后改为投递失败
+     * @param retryTime 下次重试时间
+     */
+    @Update("update order_outbox set retry_count = retry_count + 1, status = #{status}, " +
+            "lease_owner = null, lease_until = #{retryTime} where id = #{id} and lease_owner = #{leaseOwner}")
+    void incrRetryCount(Long id, String leaseOwner, Integer status, LocalDateTime retryTime);
+
+    /**
+     * 删除指定时间之前已投递的消息
+     * @param deliverTime
+     * @param limit
+     * @return 删除的行数
+     */
+    @Delete("delete from order_outbox where status = 1 and deliver_time < #{deliverTime} limit #{limit}")
+    int deleteDeliveredBefore(LocalDateTime deliverTime, int limit);
+}
@@ -52,6 +52,32 @@ public interface ShoppingCartMapper {
     @Delete("delete from shopping_cart where id = #{id}")
     void deleteById(Long id);
 
+    /**
+     * 根据用户id批量删除购物车数据
+     * @param userIds
+     */
+    void deleteByUserIds(List<Long> userIds);
+
+    /**
+     * 加入购物车，已有相同商品时份数累加（依赖唯一索引uk_user_item）
+     * @param shoppingCart
+     */
+    void insertOrIncrement(ShoppingCart shoppingCart);
+
+    /**
+     * 份数大于1时减1
+     * @param shoppingCart
+     * @return 修改的行数，0表示商品不存在或只剩1份
+     */
+    int decrementNumber(ShoppingCart shoppingCart);
+
+    /**
+     * 只剩1份时删除该商品
+     * @param shoppingCart
+     * @return
+     */
+    int deleteIfLast(ShoppingCart shoppingCart);
+
 
     /**
      * 批量插入购物车数据
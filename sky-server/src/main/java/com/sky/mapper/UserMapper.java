@@ -1,10 +1,13 @@
 package com.sky.mapper;
 
 
+import com.sky.entity.DailyBusinessStats;
 import com.sky.entity.User;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 @Mapper
@@ -35,4 +38,12 @@ public interface UserMapper {
      * @return
      */
     Integer countByMap(Map map);
+
+    /**
+     * 按天分组统计指定时间段内的新增用户数
+     * @param begin
+     * @param end
+     * @return 只包含有新增用户的日期
+     */
+    List<DailyBusinessStats> getDailyNewUsers(LocalDateTime begin, LocalDateTime end);
 }
@@ -0,0 +1,37 @@
+package com.sky.service;
+
+import com.sky.entity.DailyBusinessStats;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+public interface BusinessStatsService {
+
+    /**
+     * 查询每日营业数据，过去的日期读取汇总表，当天实时计算
+     * @param begin
+     * @param end
+     * @return 区间内每一天都有对应的数据
+     */
+    Map<LocalDate, DailyBusinessStats> getDailyStats(LocalDate begin, LocalDate end);
+
+    /**
+     * 根据原始订单/用户数据重新汇总指定日期范围（只会保存今天之前的日期）
+     * @param begin
+     * @param end
+     * @return
+     */
+    Map<LocalDate, DailyBusinessStats> rollup(LocalDate begin, LocalDate end);
+
+    /**
+     * 订单状态变化时调用，过去日期的订单变化后标记该日期需要重新汇总
+     * @param orderTime 订单的下单时间
+     */
+    void markDirty(LocalDateTime orderTime);
+
+    /**
+     * 重新汇总所有被标记的日期
+     */
+    void rollupDirtyDates();
+}
@@ -4,6 +4,7 @@ import com.sky.dto.EmployeeDTO;
 import com.sky.dto.EmployeeLoginDTO;
 import com.sky.dto.EmployeePageQueryDTO;
 import com.sky.entity.Employee;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
 
 public interface EmployeeService {
@@ -32,6 +33,14 @@ public interface EmployeeService {
      */
     PageResult pageQuery(EmployeePageQueryDTO employeePageQueryDTO);
 
+    /**
+     * 员工游标分页查询
+     *
+     * @param employeePageQueryDTO
+     * @return
+     */
+    CursorPageResult pageQueryByCursor(EmployeePageQueryDTO employeePageQueryDTO);
+
 
     /**
      * 启用或禁用员工账号
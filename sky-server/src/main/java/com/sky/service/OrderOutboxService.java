@@ -0,0 +1,25 @@
+package com.sky.service;
+
+import com.sky.event.OrderEvent;
+
+public interface OrderOutboxService {
+
+    /**
+     * 需要通知商家端的订单事件写入发件箱，必须和订单状态修改在同一个事务中调用
+     * @param event
+     * @return 是否写入
+     */
+    boolean save(OrderEvent event);
+
+    /**
+     * 投递一批待投递消息
+     * @return 本批认领的消息数，包括投递失败等待重试的消息
+     */
+    int relayBatch();
+
+    /**
+     * 清理已投递的过期消息
+     * @return 删除的消息数
+     */
+    int prune();
+}
@@ -1,6 +1,7 @@
 package com.sky.service;
 
 import com.sky.dto.*;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
@@ -30,8 +31,9 @@ public interface OrderService {
     /**
      * 支付成功，修改订单状态
      * @param outTradeNo
+     * @param transactionId
      */
-    void paySuccess(String outTradeNo);
+    void paySuccess(String outTradeNo, String transactionId);
 
     /**
      * 用户端订单分页查询
@@ -70,6 +72,13 @@ public interface OrderService {
      */
     PageResult conditionSearch(OrdersPageQueryDTO ordersPageQueryDTO);
 
+    /**
+     * 游标分页搜索订单，按下单时间倒序，深分页也只扫描一页数据
+     * @param ordersPageQueryDTO
+     * @return
+     */
+    CursorPageResult conditionSearchByCursor(OrdersPageQueryDTO ordersPageQueryDTO);
+
     /**
      * 各个状态的订单数量统计
      * @return
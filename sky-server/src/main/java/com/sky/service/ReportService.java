@@ -51,7 +51,10 @@ public interface ReportService {
 
     /**
      * 导出数据报表
+     * @param begin
+     * @param end
+     * @param detail 是否导出订单明细
      * @param response
      */
-    void export(HttpServletResponse response);
+    void export(LocalDate begin, LocalDate end, boolean detail, HttpServletResponse response);
 }
@@ -33,4 +33,29 @@ public interface ShoppingCartService {
      */
     void subShoppingCart(ShoppingCartDTO shoppingCartDTO);
 
+    /**
+     * 查询指定用户的购物车
+     * @param userId
+     * @return
+     */
+    List<ShoppingCart> list(Long userId);
+
+    /**
+     * 清空指定用户的购物车
+     * @param userId
+     */
+    void clean(Long userId);
+
+    /**
+     * 批量加入购物车，已有的商品累加份数
+     * @param userId
+     * @param shoppingCartList
+     */
+    void addBatch(Long userId, List<ShoppingCart> shoppingCartList);
+
+    /**
+     * 把有改动的购物车批量写回数据库
+     */
+    void flushDirtyCarts();
+
 }
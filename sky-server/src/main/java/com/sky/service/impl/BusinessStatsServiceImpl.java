@@ -0,0 +1,157 @@
+package com.sky.service.impl;
+
+import com.sky.entity.DailyBusinessStats;
+import com.sky.mapper.DailyBusinessStatsMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.service.BusinessStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 每日营业数据汇总
+ */
+@Service
+@Slf4j
+public class BusinessStatsServiceImpl implements BusinessStatsService {
+
+    //需要重新汇总的日期集合
+    public static final String DIRTY_KEY = "business_stats_dirty";
+
+    @Autowired
+    private DailyBusinessStatsMapper dailyBusinessStatsMapper;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private UserMapper userMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 查询每日营业数据，过去的日期读取汇总表，当天实时计算
+     *
+     * @param begin
+     * @param end
+     * @return
+     */
+    public Map<LocalDate, DailyBusinessStats> getDailyStats(LocalDate begin, LocalDate end) {
+        if (end.isBefore(begin)) {
+            throw new IllegalArgumentException("end 日期不能早于 begin 日期");
+        }
+        LocalDate today = LocalDate.now();
+        Map<LocalDate, DailyBusinessStats> result = new HashMap<>();
+
+        //过去的日期：读取汇总表
+        if (begin.isBefore(today)) {
+            LocalDate pastEnd = end.isBefore(today) ? end : today.minusDays(1);
+            dailyBusinessStatsMapper.list(begin, pastEnd).forEach(stats -> result.put(stats.getDate(), stats));
+
+            //汇总表中还没有的日期（首次上线、定时任务漏跑）现场补汇总
+            List<LocalDate> missing = new ArrayList<>();
+            for (LocalDate date = begin; !date.isAfter(pastEnd); date = date.plusDays(1)) {
+                if (!result.containsKey(date)) {
+                    missing.add(date);
+                }
+            }
+            if (missing.size() > 0) {
+                log.info("补汇总营业数据：{} 至 {}", missing.get(0), missing.get(missing.size() - 1));
+                result.putAll(rollup(missing.get(0), missing.get(missing.size() - 1)));
+            }
+        }
+
+        //当天（及以后）：实时计算
+        if (!end.isBefore(today)) {
+            result.putAll(compute(begin.isAfter(today) ? begin : today, end));
+        }
+        return result;
+    }
+
+    /**
+     * 根据原始订单/用户数据重新汇总指定日期范围
+     *
+     * @param begin
+     * @param end
+     * @return
+     */
+    public Map<LocalDate, DailyBusinessStats> rollup(LocalDate begin, LocalDate end) {
+        Map<LocalDate, DailyBusinessStats> statsMap = compute(begin, end);
+
+        //当天的数据还在变化，不写入汇总表
+        LocalDate today = LocalDate.now();
+        LocalDateTime now = LocalDateTime.now();
+        List<DailyBusinessStats> statsList = statsMap.values().stream()
+                .filter(stats -> stats.getDate().isBefore(today))
+                .collect(Collectors.toList());
+        if (statsList.size() > 0) {
+            statsList.forEach(stats -> stats.setUpdateTime(now));
+            dailyBusinessStatsMapper.upsertBatch(statsList);
+        }
+        return statsMap;
+    }
+
+    /**
+     * 订单状态变化时调用，过去日期的订单变化后标记该日期需要重新汇总
+     *
+     * @param orderTime 订单的下单时间
+     */
+    public void markDirty(LocalDateTime orderTime) {
+        if (orderTime != null && orderTime.toLocalDate().isBefore(LocalDate.now())) {
+            stringRedisTemplate.opsForSet().add(DIRTY_KEY, orderTime.toLocalDate().toString());
+        }
+    }
+
+    /**
+     * 重新汇总所有被标记的日期
+     * 先取出标记再汇总，汇总期间再次被标记的日期会保留到下一轮；汇总失败时放回标记，下次重试
+     */
+    public void rollupDirtyDates() {
+        String date;
+        while ((date = stringRedisTemplate.opsForSet().pop(DIRTY_KEY)) != null) {
+            LocalDate dirtyDate = LocalDate.parse(date);
+            log.info("重新汇总营业数据：{}", dirtyDate);
+            try {
+                rollup(dirtyDate, dirtyDate);
+            } catch (RuntimeException e) {
+                stringRedisTemplate.opsForSet().add(DIRTY_KEY, date);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 一次分组查询订单、一次分组查询用户，计算区间内每天的营业数据（没有数据的日期补0）
+     *
+     * @param begin
+     * @param end
+     * @return
+     */
+    private Map<LocalDate, DailyBusinessStats> compute(LocalDate begin, LocalDate end) {
+        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
+        LocalDateTime endTime = LocalDateTime.of(end, LocalTime.MAX);
+
+        Map<LocalDate, DailyBusinessStats> statsMap = new HashMap<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            statsMap.put(date, DailyBusinessStats.empty(date));
+        }
+
+        orderMapper.getDailyStatistics(beginTime, endTime).forEach(stats -> {
+            stats.setNewUsers(0);
+            statsMap.put(stats.getDate(), stats);
+        });
+        userMapper.getDailyNewUsers(beginTime, endTime).forEach(stats ->
+                statsMap.get(stats.getDate()).setNewUsers(stats.getNewUsers()));
+
+        return statsMap;
+    }
+}
@@ -2,6 +2,7 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.MenuSnapshot;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.DishDTO;
@@ -14,8 +15,10 @@ import com.sky.mapper.DishFlavorMapper;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealDishMapper;
 import com.sky.mapper.SetmealMapper;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
 import com.sky.service.DishService;
+import com.sky.utils.PageCursorUtil;
 import com.sky.vo.DishVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -26,6 +29,8 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -40,6 +45,8 @@ public class DishServiceImpl implements DishService {
     private SetmealDishMapper setmealDishMapper;
     @Autowired
     private SetmealMapper setmealMapper;
+    @Autowired
+    private MenuSnapshot menuSnapshot;
 
     /**
      * 新增菜品，with对应的口味数据
@@ -67,6 +74,8 @@ public class DishServiceImpl implements DishService {
 
         }
 
+        //菜单快照在事务提交后重新加载
+        menuSnapshot.refreshAfterCommit();
     }
 
 
@@ -81,6 +90,29 @@ public class DishServiceImpl implements DishService {
         return new PageResult(page.getTotal(),page.getResult());
     }
 
+    /**
+     * 菜品游标分页查询，从游标记录的(create_time, id)之后继续查找
+     * @param dishPageQueryDTO
+     * @return
+     */
+    public CursorPageResult pageQueryByCursor(DishPageQueryDTO dishPageQueryDTO) {
+        int pageSize = PageCursorUtil.pageSize(dishPageQueryDTO.getPageSize());
+        PageCursorUtil.Cursor cursor = PageCursorUtil.decode(dishPageQueryDTO.getCursor());
+        if (cursor != null) {
+            dishPageQueryDTO.seekAfter(cursor.getTime(), cursor.getId());
+        }
+
+        // 多查一行用于判断是否还有下一页
+        PageHelper.startPage(1, pageSize + 1, false);
+        Page<DishVO> page = dishMapper.pageQuery(dishPageQueryDTO);
+        CursorPageResult result = PageCursorUtil.build(page.getResult(), pageSize, DishVO::getCreateTime, DishVO::getId);
+
+        if (cursor == null && dishPageQueryDTO.isApproximateTotal()) {
+            PageCursorUtil.setApproximateTotal(result, dishMapper.countApproximate(dishPageQueryDTO));
+        }
+        return result;
+    }
+
     /**
      * 批量删除菜品
      *
@@ -112,7 +144,7 @@ public class DishServiceImpl implements DishService {
         //sql: delete from dish where id in (1,2,3)
         dishMapper.deleteByIds(ids);
         dishFlavorMapper.deleteByDishIds(ids);
-
+        menuSnapshot.refreshAfterCommit();
 
     }
 
@@ -168,6 +200,7 @@ public class DishServiceImpl implements DishService {
             });
             dishFlavorMapper.insertBatch(flavors);
         }
+        menuSnapshot.refreshAfterCommit();
 
     }
     /**
@@ -200,6 +233,7 @@ public class DishServiceImpl implements DishService {
                 }
             }
         }
+        menuSnapshot.refreshAfterCommit();
     }
 
     /**
@@ -211,15 +245,21 @@ public class DishServiceImpl implements DishService {
         List<Dish> dishList = dishMapper.list(dish);
 
         List<DishVO> dishVOList = new ArrayList<>();
+        if (dishList == null || dishList.size() == 0) {
+            return dishVOList;
+        }
+
+        //一条sql批量查出所有菜品的口味，再在内存中按dishId分组，避免每个菜品查一次
+        List<Long> dishIds = dishList.stream().map(Dish::getId).collect(Collectors.toList());
+        Map<Long, List<DishFlavor>> flavorMap = dishFlavorMapper.getByDishIds(dishIds)
+                .stream()
+                .collect(Collectors.groupingBy(DishFlavor::getDishId));
 
         for (Dish d : dishList) {
             DishVO dishVO = new DishVO();
             BeanUtils.copyProperties(d,dishVO);
 
-            //根据菜品id查询对应的口味
-            List<DishFlavor> flavors = dishFlavorMapper.getByDishId(d.getId());
-
-            dishVO.setFlavors(flavors);
+            dishVO.setFlavors(flavorMap.getOrDefault(d.getId(), new ArrayList<>()));
             dishVOList.add(dishVO);
         }
 
@@ -14,8 +14,10 @@ import com.sky.exception.AccountLockedException;
 import com.sky.exception.AccountNotFoundException;
 import com.sky.exception.PasswordErrorException;
 import com.sky.mapper.EmployeeMapper;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
 import com.sky.service.EmployeeService;
+import com.sky.utils.PageCursorUtil;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -109,6 +111,31 @@ public class EmployeeServiceImpl implements EmployeeService {
         return new PageResult(total, records);
     }
 
+    /**
+     * 员工游标分页查询，从游标记录的(create_time, id)之后继续查找
+     *
+     * @param employeePageQueryDTO
+     * @return
+     */
+    @Override
+    public CursorPageResult pageQueryByCursor(EmployeePageQueryDTO employeePageQueryDTO) {
+        int pageSize = PageCursorUtil.pageSize(employeePageQueryDTO.getPageSize());
+        PageCursorUtil.Cursor cursor = PageCursorUtil.decode(employeePageQueryDTO.getCursor());
+        if (cursor != null) {
+            employeePageQueryDTO.seekAfter(cursor.getTime(), cursor.getId());
+        }
+
+        // 多查一行用于判断是否还有下一页
+        PageHelper.startPage(1, pageSize + 1, false);
+        Page<Employee> page = employeeMapper.pageQuery(employeePageQueryDTO);
+        CursorPageResult result = PageCursorUtil.build(page.getResult(), pageSize, Employee::getCreateTime, Employee::getId);
+
+        if (cursor == null && employeePageQueryDTO.isApproximateTotal()) {
+            PageCursorUtil.setApproximateTotal(result, employeeMapper.countApproximate(employeePageQueryDTO));
+        }
+        return result;
+    }
+
     /**
      * 启用或禁用员工账号
      *
@@ -0,0 +1,147 @@
+package com.sky.service.impl;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.entity.OrderOutbox;
+import com.sky.event.OrderEvent;
+import com.sky.event.OrderEventType;
+import com.sky.mapper.OrderOutboxMapper;
+import com.sky.properties.OrderTaskProperties;
+import com.sky.service.OrderOutboxService;
+import com.sky.websocket.WebSocketBroadcaster;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * 订单消息发件箱：来单提醒、催单和订单状态在同一事务中落库，中继投递到WebSocket，至少投递一次
+ */
+@Service
+@Slf4j
+public class OrderOutboxServiceImpl implements OrderOutboxService {
+
+    @Autowired
+    private OrderOutboxMapper orderOutboxMapper;
+    @Autowired
+    private WebSocketBroadcaster webSocketBroadcaster;
+    @Autowired
+    private OrderTaskProperties orderTaskProperties;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 需要通知商家端的订单事件写入发件箱
+     * @param event
+     * @return
+     */
+    public boolean save(OrderEvent event) {
+        if (event.getType() != OrderEventType.PAID && event.getType() != OrderEventType.REMINDED) {
+            return false;
+        }
+        OrderOutbox orderOutbox = OrderOutbox.builder()
+                .eventType(event.getType().name())
+                .orderId(event.getOrderId())
+                .number(event.getNumber())
+                .createTime(LocalDateTime.now())
+                .build();
+        orderOutboxMapper.insert(orderOutbox);
+        return true;
+    }
+
+    /**
+     * 投递一批待投递消息：认领(短事务提交) -> 事务外推送 -> 标记已投递
+     * 推送期间不持有行锁；推送成功但标记前宕机时，租约到期后会被重新投递（至少一次）
+     * 推送失败的消息跳过，按失败次数退避后重试，不阻塞后面的消息；超过最大次数后标记为投递失败
+     * @return 本批认领的消息数
+     */
+    public int relayBatch() {
+        String leaseOwner = UUID.randomUUID().toString();
+        List<OrderOutbox> outboxList = claim(leaseOwner);
+        if (outboxList.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> deliveredIds = new ArrayList<>();
+        for (OrderOutbox outbox : outboxList) {
+            if (webSocketBroadcaster.publish(buildMessage(outbox)) <= 0) {
+                //redis不可用或没有节点订阅
+                retryLater(outbox, leaseOwner);
+                continue;
+            }
+            deliveredIds.add(outbox.getId());
+        }
+
+        if (deliveredIds.size() > 0) {
+            orderOutboxMapper.markDelivered(deliveredIds, leaseOwner, LocalDateTime.now());
+        }
+        return outboxList.size();
+    }
+
+    /**
+     * 记录一次投递失败：重试间隔按失败次数指数退避，超过最大次数后不再投递
+     * @param outbox
+     * @param leaseOwner
+     */
+    private void retryLater(OrderOutbox outbox, String leaseOwner) {
+        int retryCount = outbox.getRetryCount() + 1;
+        if (retryCount >= orderTaskProperties.getOutboxMaxRetryCount()) {
+            log.error("订单消息投递失败{}次，不再投递：id={}, 订单号={}", retryCount, outbox.getId(), outbox.getNumber());
+            orderOutboxMapper.incrRetryCount(outbox.getId(), leaseOwner, OrderOutbox.FAILED, null);
+            return;
+        }
+        long backoffSeconds = Math.min(1L << Math.min(retryCount - 1, 30), orderTaskProperties.getOutboxMaxBackoffSeconds());
+        log.warn("订单消息投递失败{}次，{}秒后重试：id={}", retryCount, backoffSeconds, outbox.getId());
+        orderOutboxMapper.incrRetryCount(outbox.getId(), leaseOwner, OrderOutbox.PENDING, LocalDateTime.now().plusSeconds(backoffSeconds));
+    }
+
+    /**
+     * 在短事务中锁定并认领一批消息，提交后其他节点不会在租约期内重复认领
+     * @param leaseOwner
+     * @return
+     */
+    private List<OrderOutbox> claim(String leaseOwner) {
+        List<OrderOutbox> outboxList = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<OrderOutbox> list = orderOutboxMapper.lockPending(now, orderTaskProperties.getOutboxBatchSize());
+            if (!list.isEmpty()) {
+                List<Long> ids = list.stream().map(OrderOutbox::getId).collect(Collectors.toList());
+                orderOutboxMapper.claim(ids, leaseOwner, now.plusSeconds(orderTaskProperties.getOutboxLeaseSeconds()));
+            }
+            return list;
+        });
+        return outboxList == null ? Collections.emptyList() : outboxList;
+    }
+
+    /**
+     * 分批删除已投递超过保留时间的消息
+     * @return
+     */
+    public int prune() {
+        LocalDateTime before = LocalDateTime.now().minusHours(orderTaskProperties.getOutboxRetentionHours());
+        int total = 0;
+        int deleted;
+        do {
+            deleted = orderOutboxMapper.deleteDeliveredBefore(before, orderTaskProperties.getChunkSize());
+            total += deleted;
+        } while (deleted == orderTaskProperties.getChunkSize());
+        return total;
+    }
+
+    private String buildMessage(OrderOutbox outbox) {
+        Map map = new HashMap();
+        // 消息类型，1表示来单提醒，2表示客户催单
+        map.put("type", OrderEventType.REMINDED.name().equals(outbox.getEventType()) ? 2 : 1);
+        map.put("orderId", outbox.getOrderId());
+        map.put("content", "订单号：" + outbox.getNumber());
+        return JSON.toJSONString(map);
+    }
+}
@@ -1,33 +1,46 @@
 package com.sky.service.impl;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.MenuSnapshot;
 import com.sky.constant.MessageConstant;
+import com.sky.constant.StatusConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.*;
 import com.sky.entity.*;
+import com.sky.event.OrderEvent;
+import com.sky.event.OrderEventPublisher;
+import com.sky.event.OrderEventType;
 import com.sky.exception.AddressBookBusinessException;
 import com.sky.exception.OrderBusinessException;
 import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.*;
+import com.sky.properties.OrderProperties;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
 import com.sky.service.OrderService;
+import com.sky.service.ShoppingCartService;
+import com.sky.utils.PageCursorUtil;
+import com.sky.utils.SnowflakeIdGenerator;
 import com.sky.utils.WeChatPayUtil;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
-import com.sky.websocket.WebSocketServer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.CollectionUtils;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -40,12 +53,17 @@ import java.util.stream.Collectors;
 @Slf4j
 public class OrderServiceImpl implements OrderService {
 
+    //支付回调去重key前缀，value为微信支付交易号
+    private static final String PAY_NOTIFY_KEY = "pay_notify_";
+    //微信支付回调的重试周期远小于1天
+    private static final Duration PAY_NOTIFY_TTL = Duration.ofDays(1);
+
     @Autowired
     private OrderMapper orderMapper;
     @Autowired
     private OrderDetailMapper orderDetailMapper;
     @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
+    private ShoppingCartService shoppingCartService;
     @Autowired
     private UserMapper userMapper;
     @Autowired
@@ -53,16 +71,26 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     private WeChatPayUtil weChatPayUtil;
     @Autowired
-    private WebSocketServer webSocketServer;
+    private OrderEventPublisher orderEventPublisher;
+    @Autowired
+    private MenuSnapshot menuSnapshot;
+    @Autowired
+    private OrderProperties orderProperties;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private SnowflakeIdGenerator snowflakeIdGenerator;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
 
 
     /**
      * 用户下单
+     * 先完成所有查询和金额计算，再在一个短事务中写入订单和订单明细
      *
      * @param ordersSubmitDTO
      * @return
      */
-    @Transactional //保证事务一致性
     public OrderSubmitVO submitOrder(OrdersSubmitDTO ordersSubmitDTO) {
         //处理“业务异常”（没有地址，没有买商品-->不能下单） 当然这个业务异常处理工作完全可以交给前端去做
         AddressBook addressBook = addressBookMapper.getById(ordersSubmitDTO.getAddressBookId());
@@ -71,37 +99,58 @@ public class OrderServiceImpl implements OrderService {
         }
 
         Long userId = BaseContext.getCurrentId();
-        ShoppingCart shoppingCart = new ShoppingCart();
-        shoppingCart.setUserId(userId);
-        List<ShoppingCart> shoppingCartList = shoppingCartMapper.list(shoppingCart);
+        List<ShoppingCart> shoppingCartList = shoppingCartService.list(userId);
         if (shoppingCartList == null || shoppingCartList.size() == 0) {
             throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_IS_NULL);
         }
-        //order表插入1条数据
+
+        //按菜单快照中的当前价格生成订单明细，服务端重新计算订单金额，不信任前端传来的amount
+        List<OrderDetail> orderDetailList = new ArrayList<>();
+        BigDecimal goodsAmount = BigDecimal.ZERO;
+        int totalNumber = 0;
+        for (ShoppingCart cart : shoppingCartList) {
+            BigDecimal price = getCurrentPrice(cart);
+            OrderDetail orderDetail = new OrderDetail();
+            BeanUtils.copyProperties(cart, orderDetail);
+            orderDetail.setAmount(price);
+            orderDetailList.add(orderDetail);
+            goodsAmount = goodsAmount.add(price.multiply(BigDecimal.valueOf(cart.getNumber())));
+            totalNumber += cart.getNumber();
+        }
+        //打包费同样按购物车份数计算，不使用前端传来的packAmount
+        int packAmount = totalNumber * orderProperties.getPackFee();
+        if (ordersSubmitDTO.getPackAmount() != null && ordersSubmitDTO.getPackAmount() != packAmount) {
+            log.warn("打包费与前端不一致，用户：{}，前端：{}，服务端：{}", userId, ordersSubmitDTO.getPackAmount(), packAmount);
+        }
+        BigDecimal amount = goodsAmount.add(BigDecimal.valueOf(packAmount)).add(orderProperties.getDeliveryFee());
+        if (ordersSubmitDTO.getAmount() != null && ordersSubmitDTO.getAmount().compareTo(amount) != 0) {
+            log.warn("下单金额与前端不一致，用户：{}，前端：{}，服务端：{}", userId, ordersSubmitDTO.getAmount(), amount);
+        }
+
         Orders orders = new Orders();
         BeanUtils.copyProperties(ordersSubmitDTO,orders);
+        orders.setAmount(amount);
+        orders.setPackAmount(packAmount);
         orders.setOrderTime(LocalDateTime.now());
         orders.setPayStatus(Orders.UN_PAID);
         orders.setStatus(Orders.PENDING_PAYMENT);
-        orders.setNumber(String.valueOf(System.currentTimeMillis()));//订单号
+        orders.setNumber(snowflakeIdGenerator.nextIdStr());//订单号
         orders.setPhone(addressBook.getPhone());
         orders.setConsignee(addressBook.getConsignee());
         orders.setUserId(userId);
-        orderMapper.insert(orders);
 
-        //order_detail表插入n条数据
-        List<OrderDetail> orderDetailList = new ArrayList<>();
-        for (ShoppingCart cart : shoppingCartList) {
-            OrderDetail orderDetail = new OrderDetail();
-            BeanUtils.copyProperties(cart, orderDetail);
-            orderDetail.setOrderId(orders.getId());
-            orderDetailList.add(orderDetail);
-        }
+        //order表插入1条数据，order_detail表一条sql插入n条数据，保证事务一致性
+        transactionTemplate.executeWithoutResult(status -> {
+            orderMapper.insert(orders);
+            orderDetailList.forEach(orderDetail -> orderDetail.setOrderId(orders.getId()));
+            orderDetailMapper.insertBatch(orderDetailList);
+        });
 
-        orderDetailMapper.insertBatch(orderDetailList);
+        //事务提交后发布下单事件，登记支付截止时间，超时未支付自动取消
+        publishEvent(OrderEventType.SUBMITTED, orders);
 
         //清空购物车
-        shoppingCartMapper.deleteByUserId(userId);
+        shoppingCartService.clean(userId);
 
         //返回结果（封装成VO）
         OrderSubmitVO orderSubmitVO = OrderSubmitVO.builder()
@@ -121,6 +170,7 @@ public class OrderServiceImpl implements OrderService {
      * @param ordersPaymentDTO
      * @return
      */
+    @Transactional
     public OrderPaymentVO payment(OrdersPaymentDTO ordersPaymentDTO) throws Exception {
         // 当前登录用户id
         Long userId = BaseContext.getCurrentId();
@@ -143,64 +193,58 @@ public class OrderServiceImpl implements OrderService {
         OrderPaymentVO vo = jsonObject.toJavaObject(OrderPaymentVO.class);
         vo.setPackageStr(jsonObject.getString("package"));
 
-        Integer OrderPaidStatus = Orders.PAID;
-        Integer OrderStatus = Orders.TO_BE_CONFIRMED;
-
         LocalDateTime check_out_time = LocalDateTime.now();
 
         String orderNumber = ordersPaymentDTO.getOrderNumber();
 
-        log.info("调用updateStatus，更新支付的数据库信息");
-        orderMapper.updateStatus(OrderStatus, OrderPaidStatus, check_out_time,orderNumber);
-
-
-        Map map = new HashMap();
-        map.put("type", 1);// 消息类型，1表示来单提醒
-        //获取订单id
-        Orders orders=orderMapper.getByNumberAndUserId(orderNumber, userId);
-        map.put("orderId", orders.getId());
-        map.put("content", "订单号：" + orderNumber);
-
-        // 通过WebSocket实现来单提醒，向客户端浏览器推送消息
-        webSocketServer.sendToAllClient(JSON.toJSONString(map));
-        log.info("来单提醒：{}", JSON.toJSONString(map));
-
+        log.info("调用updatePaid，更新支付的数据库信息");
+        // 只能支付自己的、仍处于待付款的订单，已取消（如支付超时）的订单不会被改回已支付
+        if (orderMapper.updatePaid(orderNumber, userId, Orders.PENDING_PAYMENT, Orders.UN_PAID,
+                Orders.TO_BE_CONFIRMED, Orders.PAID, check_out_time) == 0) {
+            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        }
+        // 发布支付成功事件，来单提醒（WebSocket）、撤销支付超时登记、营业数据标记都异步处理
+        orderEventPublisher.publish(OrderEvent.builder().type(OrderEventType.PAID).number(orderNumber).userId(userId).build());
 
         return vo;
     }
 
     /**
      * 支付成功，修改订单状态
+     * 微信会重复回调：同一订单号先用redis SETNX去重，再用 pay_status = 0 的条件更新兜底，
+     * 重复回调最多一次redis操作，不会重复写库和重复来单提醒
      *
      * @param outTradeNo
+     * @param transactionId
      */
     //TODO 完善微信支付：目前绕过了微信支付（直接修改了支付状态），这个方法被架空
-    public void paySuccess(String outTradeNo) {
-
-        // 根据订单号查询订单
-        Orders ordersDB = orderMapper.getByNumber(outTradeNo);
-
-        // 根据订单id更新订单的状态、支付方式、支付状态、结账时间
-        Orders orders = Orders.builder()
-                .id(ordersDB.getId())
-                .status(Orders.TO_BE_CONFIRMED)
-                .payStatus(Orders.PAID)
-                .checkoutTime(LocalDateTime.now())
-                .build();
-
-        orderMapper.update(orders);
-
-        //通过websocket发送消息给商家端，提示有新订单支付成功
-        Map map = new HashMap();
-        map.put("type", 1);// 消息类型，1表示来单提醒, 2表示客户催单
-        map.put("orderId", ordersDB.getId());
-        map.put("content", "订单号：" + outTradeNo);
-
-        String json = JSON.toJSONString(map);
-        webSocketServer.sendToAllClient(json);
-
-
+    @Transactional
+    public void paySuccess(String outTradeNo, String transactionId) {
+        String key = PAY_NOTIFY_KEY + outTradeNo;
+        Boolean first = stringRedisTemplate.opsForValue().setIfAbsent(key, String.valueOf(transactionId), PAY_NOTIFY_TTL);
+        if (!Boolean.TRUE.equals(first)) {
+            log.info("重复的支付回调，忽略：{}", outTradeNo);
+            return;
+        }
+        //事务回滚时删除去重标记，让微信的下一次回调重新处理
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    stringRedisTemplate.delete(key);
+                }
+            }
+        });
+
+        // 根据订单号更新订单的状态、支付状态、结账时间，只更新待付款且未支付的订单
+        if (orderMapper.updatePaid(outTradeNo, null, Orders.PENDING_PAYMENT, Orders.UN_PAID,
+                Orders.TO_BE_CONFIRMED, Orders.PAID, LocalDateTime.now()) == 0) {
+            // 已经处理过，或订单已取消（超时取消后才到达的回调），需要人工对账退款
+            log.warn("订单不存在、已支付或已取消：{}", outTradeNo);
+            return;
+        }
 
+        //发布支付成功事件，异步通过websocket提示商家端有新订单支付成功
+        publishEvent(OrderEventType.PAID, Orders.builder().number(outTradeNo).build());
     }
 
     /**
@@ -226,15 +270,13 @@ public class OrderServiceImpl implements OrderService {
 
         // 查询出订单明细，并封装入OrderVO进行响应
         if (page != null && page.getTotal() > 0) {
-            for (Orders orders : page) {
-                Long orderId = orders.getId();// 订单id
-
-                // 查询订单明细
-                List<OrderDetail> orderDetails = orderDetailMapper.getByOrderId(orderId);
+            // 一次查询出当前页所有订单的明细
+            Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(page.getResult());
 
+            for (Orders orders : page) {
                 OrderVO orderVO = new OrderVO();
                 BeanUtils.copyProperties(orders, orderVO);
-                orderVO.setOrderDetailList(orderDetails);
+                orderVO.setOrderDetailList(orderDetailMap.getOrDefault(orders.getId(), new ArrayList<>()));
 
                 list.add(orderVO);
             }
@@ -303,6 +345,7 @@ public class OrderServiceImpl implements OrderService {
         orders.setCancelReason("用户取消");
         orders.setCancelTime(LocalDateTime.now());
         orderMapper.update(orders);
+        publishEvent(OrderEventType.CANCELLED, ordersDB);
     }
 
     /**
@@ -318,19 +361,38 @@ public class OrderServiceImpl implements OrderService {
         List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(id);
 
         // 将订单详情对象转换为购物车对象
-        List<ShoppingCart> shoppingCartList = orderDetailList.stream().map(x -> {
+        List<ShoppingCart> shoppingCartList = new ArrayList<>();
+        for (OrderDetail x : orderDetailList) {
             ShoppingCart shoppingCart = new ShoppingCart();
 
             // 将原订单详情里面的菜品信息重新复制到购物车对象中
             BeanUtils.copyProperties(x, shoppingCart, "id");
+            // 名称、图片、价格以菜单快照中的当前数据为准，已停售或已删除的商品不再加入
+            if (x.getDishId() != null) {
+                Dish dish = menuSnapshot.getDish(x.getDishId());
+                if (dish == null || StatusConstant.DISABLE.equals(dish.getStatus())) {
+                    continue;
+                }
+                shoppingCart.setName(dish.getName());
+                shoppingCart.setImage(dish.getImage());
+                shoppingCart.setAmount(dish.getPrice());
+            } else {
+                Setmeal setmeal = menuSnapshot.getSetmeal(x.getSetmealId());
+                if (setmeal == null || StatusConstant.DISABLE.equals(setmeal.getStatus())) {
+                    continue;
+                }
+                shoppingCart.setName(setmeal.getName());
+                shoppingCart.setImage(setmeal.getImage());
+                shoppingCart.setAmount(setmeal.getPrice());
+            }
             shoppingCart.setUserId(userId);
             shoppingCart.setCreateTime(LocalDateTime.now());
 
-            return shoppingCart;
-        }).collect(Collectors.toList());
+            shoppingCartList.add(shoppingCart);
+        }
 
-        // 将购物车对象批量添加到数据库
-        shoppingCartMapper.insertBatch(shoppingCartList);
+        // 将购物车对象批量加入购物车，已有的商品累加份数
+        shoppingCartService.addBatch(userId, shoppingCartList);
     }
 
     /**
@@ -345,22 +407,53 @@ public class OrderServiceImpl implements OrderService {
         Page<Orders> page = orderMapper.pageQuery(ordersPageQueryDTO);
 
         // 部分订单状态，需要额外返回订单菜品信息，将Orders转化为OrderVO
-        List<OrderVO> orderVOList = getOrderVOList(page);
+        List<OrderVO> orderVOList = getOrderVOList(page.getResult());
 
         return new PageResult(page.getTotal(), orderVOList);
     }
 
-    private List<OrderVO> getOrderVOList(Page<Orders> page) {
+    /**
+     * 游标分页搜索订单
+     * 从游标记录的(order_time, id)之后继续查找，不使用offset，也不执行count；
+     * 只有第一页且请求近似总数时才统计总数，并且最多统计APPROXIMATE_COUNT_LIMIT行
+     *
+     * @param ordersPageQueryDTO
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public CursorPageResult conditionSearchByCursor(OrdersPageQueryDTO ordersPageQueryDTO) {
+        int pageSize = PageCursorUtil.pageSize(ordersPageQueryDTO.getPageSize());
+        PageCursorUtil.Cursor cursor = PageCursorUtil.decode(ordersPageQueryDTO.getCursor());
+        if (cursor != null) {
+            ordersPageQueryDTO.seekAfter(cursor.getTime(), cursor.getId());
+        }
+
+        // 多查一行用于判断是否还有下一页
+        PageHelper.startPage(1, pageSize + 1, false);
+        Page<Orders> page = orderMapper.pageQuery(ordersPageQueryDTO);
+
+        CursorPageResult result = PageCursorUtil.build(page.getResult(), pageSize, Orders::getOrderTime, Orders::getId);
+        result.setRecords(getOrderVOList(result.getRecords()));
+
+        if (cursor == null && ordersPageQueryDTO.isApproximateTotal()) {
+            PageCursorUtil.setApproximateTotal(result, orderMapper.countApproximate(ordersPageQueryDTO));
+        }
+        return result;
+    }
+
+    private List<OrderVO> getOrderVOList(List<Orders> ordersList) {
         // 需要返回订单菜品信息，自定义OrderVO响应结果
         List<OrderVO> orderVOList = new ArrayList<>();
 
-        List<Orders> ordersList = page.getResult();
         if (!CollectionUtils.isEmpty(ordersList)) {
+            // 一次查询出当前页所有订单的明细
+            Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(ordersList);
+
             for (Orders orders : ordersList) {
                 // 将共同字段复制到OrderVO
                 OrderVO orderVO = new OrderVO();
                 BeanUtils.copyProperties(orders, orderVO);
-                String orderDishes = getOrderDishesStr(orders);
+                String orderDishes = getOrderDishesStr(orderDetailMap.getOrDefault(orders.getId(), new ArrayList<>()));
 
                 // 将订单菜品信息封装到orderVO中，并添加到orderVOList
                 orderVO.setOrderDishes(orderDishes);
@@ -371,15 +464,60 @@ public class OrderServiceImpl implements OrderService {
     }
 
     /**
-     * 根据订单id获取菜品信息字符串
+     * 批量查询订单明细，并按订单id分组
+     *
+     * @param ordersList
+     * @return
+     */
+    private Map<Long, List<OrderDetail>> getOrderDetailMap(List<Orders> ordersList) {
+        if (CollectionUtils.isEmpty(ordersList)) {
+            return new HashMap<>();
+        }
+        List<Long> orderIds = ordersList.stream().map(Orders::getId).collect(Collectors.toList());
+        return orderDetailMapper.getByOrderIds(orderIds)
+                .stream()
+                .collect(Collectors.groupingBy(OrderDetail::getOrderId));
+    }
+
+    /**
+     * 发布订单事件，由订单事件线程池异步处理推送、营业数据等后续工作
      *
+     * @param type
      * @param orders
+     */
+    private void publishEvent(OrderEventType type, Orders orders) {
+        orderEventPublisher.publish(OrderEvent.builder().type(type).orderId(orders.getId())
+                .number(orders.getNumber()).userId(orders.getUserId()).orderTime(orders.getOrderTime()).build());
+    }
+
+    /**
+     * 从菜单快照查询购物车商品的当前价格，已停售或已删除的商品不能下单
+     *
+     * @param cart
      * @return
      */
-    private String getOrderDishesStr(Orders orders) {
-        // 查询订单菜品详情信息（订单中的菜品和数量）
-        List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(orders.getId());
+    private BigDecimal getCurrentPrice(ShoppingCart cart) {
+        if (cart.getDishId() != null) {
+            Dish dish = menuSnapshot.getDish(cart.getDishId());
+            if (dish == null || StatusConstant.DISABLE.equals(dish.getStatus())) {
+                throw new OrderBusinessException(MessageConstant.ORDER_ITEM_OFF_SALE);
+            }
+            return dish.getPrice();
+        }
+        Setmeal setmeal = menuSnapshot.getSetmeal(cart.getSetmealId());
+        if (setmeal == null || StatusConstant.DISABLE.equals(setmeal.getStatus())) {
+            throw new OrderBusinessException(MessageConstant.ORDER_ITEM_OFF_SALE);
+        }
+        return setmeal.getPrice();
+    }
 
+    /**
+     * 根据订单明细获取菜品信息字符串
+     *
+     * @param orderDetailList
+     * @return
+     */
+    private String getOrderDishesStr(List<OrderDetail> orderDetailList) {
         // 将每一条订单菜品信息拼接为字符串（格式：宫保鸡丁*3；）
         List<String> orderDishList = orderDetailList.stream().map(x -> {
             String orderDish = x.getName() + "*" + x.getNumber() + ";";
@@ -421,6 +559,7 @@ public class OrderServiceImpl implements OrderService {
                 .build();
 
         orderMapper.update(orders);
+        publishEvent(OrderEventType.CONFIRMED, orders);
     }
 
     /**
@@ -457,6 +596,7 @@ public class OrderServiceImpl implements OrderService {
         }
 
         orderMapper.update(orders);
+        publishEvent(OrderEventType.CANCELLED, ordersDB);
     }
 
     /**
@@ -488,6 +628,7 @@ public class OrderServiceImpl implements OrderService {
             orders.setCancelTime(LocalDateTime.now());
         }
         orderMapper.update(orders);
+        publishEvent(OrderEventType.CANCELLED, ordersDB);
     }
 
 
@@ -511,6 +652,7 @@ public class OrderServiceImpl implements OrderService {
         orders.setStatus(Orders.DELIVERY_IN_PROGRESS);
 
         orderMapper.update(orders);
+        publishEvent(OrderEventType.DELIVERING, ordersDB);
     }
 
     /**
@@ -534,6 +676,7 @@ public class OrderServiceImpl implements OrderService {
         orders.setDeliveryTime(LocalDateTime.now());
 
         orderMapper.update(orders);
+        publishEvent(OrderEventType.COMPLETED, ordersDB);
     }
 
     /**
@@ -541,6 +684,7 @@ public class OrderServiceImpl implements OrderService {
      *
      * @param id
      */
+    @Transactional
     public void reminder(Long id) {
         // 根据id查询订单
         Orders ordersDB = orderMapper.getById(id);
@@ -550,14 +694,8 @@ public class OrderServiceImpl implements OrderService {
             throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
         }
 
-        Map map = new HashMap();
-        map.put("type", 2);// 消息类型，2表示客户催单
-        map.put("orderId", ordersDB.getId());
-        map.put("content", "订单号：" + ordersDB.getNumber());
-
-        String json = JSON.toJSONString(map);
-
-        webSocketServer.sendToAllClient(json);
+        // 发布催单事件，异步通过websocket提示商家端
+        publishEvent(OrderEventType.REMINDED, ordersDB);
 
     }
 
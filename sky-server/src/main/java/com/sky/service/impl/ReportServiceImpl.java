@@ -1,14 +1,20 @@
 package com.sky.service.impl;
 
 import com.sky.dto.GoodsSalesDTO;
+import com.sky.entity.DailyBusinessStats;
 import com.sky.entity.Orders;
 import com.sky.mapper.OrderMapper;
 import com.sky.mapper.UserMapper;
+import com.sky.service.BusinessStatsService;
 import com.sky.service.ReportService;
 import com.sky.service.WorkspaceService;
 import com.sky.vo.*;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFRow;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFRow;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
@@ -33,11 +39,18 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ReportServiceImpl implements ReportService {
 
+    //模板中每日数据的起始行
+    private static final int DAILY_FIRST_ROW = 7;
+    //SXSSF内存中保留的行数，超出的行刷到临时文件
+    private static final int ROW_ACCESS_WINDOW_SIZE = 100;
+
     @Autowired
     private OrderMapper orderMapper;
     @Autowired
     private UserMapper userMapper;
     @Autowired
+    private BusinessStatsService businessStatsService;
+    @Autowired
     private WorkspaceService workspaceService; //Service不仅仅可以调用Mapper,还可以调用其他Service
 
     /**     * 获取营业额统计报表
@@ -48,38 +61,13 @@ public class ReportServiceImpl implements ReportService {
      */
     public TurnoverReportVO getTurnoverStatistics(LocalDate begin, LocalDate end) {
         //获取横坐标
-        List<LocalDate> dateList = new ArrayList(); //存放begin到end之间的每天的日期
+        List<LocalDate> dateList = getDateList(begin, end);
 
-        if (end.isBefore(begin)) {
-            throw new IllegalArgumentException("end 日期不能早于 begin 日期");
-        }
-        while (!begin.equals(end)) {
-
-            dateList.add(begin);
-            begin = begin.plusDays(1);
-
-        }
-        dateList.add(end);
-        
-
-
-        //获取纵坐标turnoverList
+        //获取纵坐标turnoverList：过去的日期读汇总表，当天实时计算
+        Map<LocalDate, DailyBusinessStats> statsMap = businessStatsService.getDailyStats(begin, end);
         List<Double> turnoverList = new ArrayList<>();
         for (LocalDate date : dateList) {
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-
-
-            Map map = new HashMap();
-            map.put("begin", beginTime);
-            map.put("end", endTime);
-            map.put("status", Orders.COMPLETED);
-            Double turnover = orderMapper.sumByMap(map);
-            if (turnover == null) {
-                turnover = 0.0;
-            }
-            turnoverList.add(turnover);
-
+            turnoverList.add(statsMap.get(date).getTurnover());
         }
 
         return TurnoverReportVO
@@ -99,37 +87,22 @@ public class ReportServiceImpl implements ReportService {
     public UserReportVO getUserStatistics(LocalDate begin, LocalDate end) {
 
         //获取横坐标
-        List<LocalDate> dateList = new ArrayList(); //存放begin到end之间的每天的日期
-
-        if (end.isBefore(begin)) {
-            throw new IllegalArgumentException("end 日期不能早于 begin 日期");
-        }
-        while (!begin.equals(end)) {
-
-            dateList.add(begin);
-            begin = begin.plusDays(1);
-
-        }
-        dateList.add(end);
+        List<LocalDate> dateList = getDateList(begin, end);
 
         //获取纵坐标（一个新增用户数量，一个总用户数量）
         List<Integer> newUserList = new ArrayList<>();
         List<Integer> totalUserList = new ArrayList<>();
 
-        //sql: select count(id) from user where create_time between ? and ?
+        //区间开始前的用户总数作为基数，区间内每天的新增用户取自每日汇总，总用户数在Java中累加
+        Map map = new HashMap();
+        map.put("end", LocalDateTime.of(begin, LocalTime.MIN).minusNanos(1));
+        Integer totalUser = userMapper.countByMap(map);
 
+        Map<LocalDate, DailyBusinessStats> statsMap = businessStatsService.getDailyStats(begin, end);
 
         for (LocalDate date : dateList) {
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-
-            Map map = new HashMap();
-            map.put("end", endTime);
-
-            Integer totalUser = userMapper.countByMap(map);
-
-            map.put("begin", beginTime);
-            Integer newUser = userMapper.countByMap(map);
+            Integer newUser = statsMap.get(date).getNewUsers();
+            totalUser += newUser;
 
             totalUserList.add(totalUser);
             newUserList.add(newUser);
@@ -155,35 +128,17 @@ public class ReportServiceImpl implements ReportService {
     public OrderReportVO getOrderStatistics(LocalDate begin, LocalDate end) {
 
         //获取横坐标
-        List<LocalDate> dateList = new ArrayList(); //存放begin到end之间的每天的日期
-
-        if (end.isBefore(begin)) {
-            throw new IllegalArgumentException("end 日期不能早于 begin 日期");
-        }
-        while (!begin.equals(end)) {
-
-            dateList.add(begin);
-            begin = begin.plusDays(1);
-
-        }
-        dateList.add(end);
+        List<LocalDate> dateList = getDateList(begin, end);
 
         //获取纵坐标,5个:每日订单数，每日有效订单数，
         List<Integer> orderCountList = new ArrayList<>();
         List<Integer> validOrderList = new ArrayList<>();
 
-
+        Map<LocalDate, DailyBusinessStats> statsMap = businessStatsService.getDailyStats(begin, end);
         for (LocalDate date : dateList) {
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-
-            Integer validOrderCount = getOrderCount(beginTime, endTime, Orders.COMPLETED);
-            Integer orderCount = getOrderCount(beginTime, endTime, null); //copilot补全把begin和end写反了,导致第一次调试的时候totalOrder是0.0
-
-            validOrderList.add(validOrderCount);
-            orderCountList.add(orderCount);
-
-
+            DailyBusinessStats stats = statsMap.get(date);
+            orderCountList.add(stats.getOrderCount());
+            validOrderList.add(stats.getValidOrderCount());
         }
 
 
@@ -210,22 +165,23 @@ public class ReportServiceImpl implements ReportService {
 
 
 
-    /**     * 获取指定时间段内(或加上制定状态)的订单数量
+    /**     * 获取begin到end之间的每天的日期（横坐标）
      *
-     * @param beginTime 开始时间
-     * @param endTime   结束时间
-     * @param status    订单状态（可选）
-     * @return 订单数量
+     * @param begin 开始日期
+     * @param end   结束日期
+     * @return 日期列表
      */
-    private Integer getOrderCount(LocalDateTime beginTime, LocalDateTime endTime, Integer status) {
-        Map map = new HashMap();
-        map.put("begin", beginTime);
-        map.put("end", endTime);
-        map.put("status", status);
-//        if (status != null) {     ai乱写的,这段代码完全没有用
-//            map.put("status", status);
-//        }
-        return orderMapper.countByMap(map);
+    private List<LocalDate> getDateList(LocalDate begin, LocalDate end) {
+        if (end.isBefore(begin)) {
+            throw new IllegalArgumentException("end 日期不能早于 begin 日期");
+        }
+        List<LocalDate> dateList = new ArrayList<>();
+        while (!begin.equals(end)) {
+            dateList.add(begin);
+            begin = begin.plusDays(1);
+        }
+        dateList.add(end);
+        return dateList;
     }
 
 
@@ -258,26 +214,32 @@ public class ReportServiceImpl implements ReportService {
 
 
     /**     * 导出数据报表
+     * 模板中已有的30行每日数据直接填充，超出的日期和订单明细通过SXSSF流式写出，内存中只保留窗口内的行
      *
+     * @param begin    开始日期
+     * @param end      结束日期
+     * @param detail   是否导出订单明细sheet
      * @param response HttpServletResponse
      */
-    public void export(HttpServletResponse response) {
-        // 1.准备数据：mapper查  2.写数据到Excel中  3.通过response输出到浏览器下载
-        BusinessDataVO businessDataVO = workspaceService.getBusinessData(
-                    LocalDateTime.of(LocalDate.now().minusDays(30), LocalTime.MIN),
-                    LocalDateTime.of(LocalDate.now().minusDays(1), LocalTime.MAX));
-
+    public void export(LocalDate begin, LocalDate end, boolean detail, HttpServletResponse response) {
+        // 1.准备数据：概览 + 每日数据都来自每日汇总（过去日期读汇总表，只有当天实时计算）
+        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
+        LocalDateTime endTime = LocalDateTime.of(end, LocalTime.MAX);
+        BusinessDataVO businessDataVO = workspaceService.getBusinessData(beginTime, endTime);
+        Map<LocalDate, DailyBusinessStats> statsMap = businessStatsService.getDailyStats(begin, end);
+        List<LocalDate> dateList = getDateList(begin, end);
 
         //2.
         //基于模版创建一个excel文件
         InputStream in = this.getClass().getClassLoader().getResourceAsStream("template/运营数据报表模板.xlsx");
+        SXSSFWorkbook excel = null;
         try {
-            XSSFWorkbook excel = new XSSFWorkbook(in);
+            XSSFWorkbook template = new XSSFWorkbook(in);
 
             //获取文件sheet页
-            XSSFSheet sheet = excel.getSheet("Sheet1");
+            XSSFSheet sheet = template.getSheet("Sheet1");
             //填充数据：时间 营业额 。。。。
-            sheet.getRow(1).getCell(1).setCellValue("时间：" + LocalDate.now().minusDays(30) + "至" + LocalDate.now().minusDays(1));
+            sheet.getRow(1).getCell(1).setCellValue("时间：" + begin + "至" + end);
             XSSFRow row = sheet.getRow(3);
             row.getCell(2).setCellValue(businessDataVO.getTurnover());
             row.getCell(4).setCellValue(businessDataVO.getOrderCompletionRate());
@@ -286,33 +248,96 @@ public class ReportServiceImpl implements ReportService {
             row.getCell(2).setCellValue(businessDataVO.getValidOrderCount());
             row.getCell(4).setCellValue(businessDataVO.getUnitPrice());
 
-            for (int i = 0; i < 30; i++) {  //不建议硬编码30不方便改报表导出需求
-                LocalDate date = LocalDate.now().minusDays(30).plusDays(i);
-                BusinessDataVO businessData = workspaceService.getBusinessData(LocalDateTime.of(date, LocalTime.MIN),
-                        LocalDateTime.of(date, LocalTime.MAX));
-                row = sheet.getRow(7 + i);
-                row.getCell(1).setCellValue(date.toString());
-                row.getCell(2).setCellValue(businessData.getTurnover());
-                row.getCell(3).setCellValue(businessData.getValidOrderCount());
-                row.getCell(4).setCellValue(businessData.getOrderCompletionRate());
-                row.getCell(5).setCellValue(businessData.getUnitPrice());
-                row.getCell(6).setCellValue(businessData.getNewUsers());
+            //模板中已有的每日数据行直接填充，记录最后一行的样式用于后面新建的行
+            int lastTemplateRow = sheet.getLastRowNum();
+            XSSFRow styleRow = sheet.getRow(lastTemplateRow);
+            int i = 0;
+            for (; i < dateList.size() && DAILY_FIRST_ROW + i <= lastTemplateRow; i++) {
+                fillDailyRow(sheet.getRow(DAILY_FIRST_ROW + i), dateList.get(i), statsMap.get(dateList.get(i)));
+            }
 
+            //超出模板的日期和订单明细通过流式workbook写出
+            excel = new SXSSFWorkbook(template, ROW_ACCESS_WINDOW_SIZE);
+            SXSSFSheet streamingSheet = excel.getSheet("Sheet1");
+            for (; i < dateList.size(); i++) {
+                SXSSFRow newRow = streamingSheet.createRow(DAILY_FIRST_ROW + i);
+                for (int col = 1; col <= 6; col++) {
+                    newRow.createCell(col).setCellStyle(styleRow.getCell(col).getCellStyle());
+                }
+                fillDailyRow(newRow, dateList.get(i), statsMap.get(dateList.get(i)));
             }
 
+            if (detail) {
+                writeOrderDetailSheet(excel.createSheet("订单明细"), beginTime, endTime);
+            }
 
             //3.
             ServletOutputStream out = response.getOutputStream();
             excel.write(out);
 
             out.close();
-            excel.close();
-
-
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            if (excel != null) {
+                //删除SXSSF写出时产生的临时文件
+                excel.dispose();
+                try {
+                    excel.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+    }
+
+    /**     * 填充一行每日数据：日期 营业额 有效订单 订单完成率 平均客单价 新增用户
+     *
+     * @param row   行
+     * @param date  日期
+     * @param stats 当天汇总数据
+     */
+    private void fillDailyRow(Row row, LocalDate date, DailyBusinessStats stats) {
+        Double orderCompletionRate = 0.0;
+        Double unitPrice = 0.0;
+        if (stats.getOrderCount() != 0 && stats.getValidOrderCount() != 0) {
+            orderCompletionRate = stats.getValidOrderCount().doubleValue() / stats.getOrderCount();
+            unitPrice = stats.getTurnover() / stats.getValidOrderCount();
+        }
+        row.getCell(1).setCellValue(date.toString());
+        row.getCell(2).setCellValue(stats.getTurnover());
+        row.getCell(3).setCellValue(stats.getValidOrderCount());
+        row.getCell(4).setCellValue(orderCompletionRate);
+        row.getCell(5).setCellValue(unitPrice);
+        row.getCell(6).setCellValue(stats.getNewUsers());
+    }
+
+    /**     * 流式查询时间段内的订单并逐行写入明细sheet，不把订单整体加载到内存
+     *
+     * @param sheet     明细sheet
+     * @param beginTime 开始时间
+     * @param endTime   结束时间
+     */
+    private void writeOrderDetailSheet(SXSSFSheet sheet, LocalDateTime beginTime, LocalDateTime endTime) {
+        String[] headers = {"订单号", "下单时间", "订单状态", "实收金额", "收货人", "手机号", "地址"};
+        SXSSFRow header = sheet.createRow(0);
+        for (int col = 0; col < headers.length; col++) {
+            header.createCell(col).setCellValue(headers[col]);
         }
-        
 
+        int[] rowIndex = {1};
+        orderMapper.streamByOrderTime(beginTime, endTime, context -> {
+            Orders orders = context.getResultObject();
+            SXSSFRow row = sheet.createRow(rowIndex[0]++);
+            row.createCell(0).setCellValue(orders.getNumber());
+            row.createCell(1).setCellValue(String.valueOf(orders.getOrderTime()));
+            row.createCell(2).setCellValue(orders.getStatus());
+            row.createCell(3).setCellValue(orders.getAmount() == null ? 0.0 : orders.getAmount().doubleValue());
+            row.createCell(4).setCellValue(orders.getConsignee());
+            row.createCell(5).setCellValue(orders.getPhone());
+            row.createCell(6).setCellValue(orders.getAddress());
+        });
+        log.info("导出订单明细{}条", rowIndex[0] - 1);
     }
 }
@@ -2,6 +2,7 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.MenuSnapshot;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.SetmealDTO;
@@ -39,6 +40,8 @@ public class SetmealServiceImpl implements SetmealService {
     private SetmealDishMapper setmealDishMapper;
     @Autowired
     private DishMapper dishMapper;
+    @Autowired
+    private MenuSnapshot menuSnapshot;
 
     /**
      * 新增套餐，同时需要保存套餐和菜品的关联关系
@@ -62,6 +65,9 @@ public class SetmealServiceImpl implements SetmealService {
 
         //保存套餐和菜品的关联关系
         setmealDishMapper.insertBatch(setmealDishes);
+
+        //菜单快照在事务提交后重新加载
+        menuSnapshot.refreshAfterCommit();
     }
 
     /**
@@ -98,6 +104,7 @@ public class SetmealServiceImpl implements SetmealService {
             //删除套餐菜品关系表中的数据
             setmealDishMapper.deleteBySetmealId(setmealId);
         });
+        menuSnapshot.refreshAfterCommit();
     }
 
     /**
@@ -142,9 +149,7 @@ public class SetmealServiceImpl implements SetmealService {
         });
         //3、重新插入套餐和菜品的关联关系，操作setmeal_dish表，执行insert
         setmealDishMapper.insertBatch(setmealDishes);
-
-
-
+        menuSnapshot.refreshAfterCommit();
     }
 
     /**
@@ -171,6 +176,7 @@ public class SetmealServiceImpl implements SetmealService {
                 .status(status)
                 .build();
         setmealMapper.update(setmeal);
+        menuSnapshot.refreshAfterCommit();
     }
 
     /**
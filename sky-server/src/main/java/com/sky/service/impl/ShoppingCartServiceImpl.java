@@ -1,84 +1,156 @@
 package com.sky.service.impl;
 
+import com.alibaba.fastjson.JSON;
+import com.sky.cache.MenuSnapshot;
+import com.sky.constant.MessageConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.ShoppingCartDTO;
 import com.sky.entity.Dish;
 import com.sky.entity.Setmeal;
 import com.sky.entity.ShoppingCart;
-import com.sky.mapper.DishMapper;
-import com.sky.mapper.SetmealMapper;
+import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.ShoppingCartMapper;
+import com.sky.properties.ShoppingCartProperties;
 import com.sky.service.ShoppingCartService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
-import springfox.documentation.annotations.ApiIgnore;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 
+/**
+ * 购物车：每个用户的购物车保存在redis的两个hash中，加减份数、续期和标记写回在一个lua脚本中完成（一次redis往返），
+ * 改动过的用户记录在dirty集合中，由定时任务批量写回shopping_cart表
+ * 关闭sky.shopping-cart.write-behind时直接读写数据库，加减份数都是单条原子sql
+ * 注意：lua脚本同时操作用户的hash和全局的dirty集合，这些key不在同一个slot，
+ * write-behind模式只支持单节点（或主从、哨兵）redis，不支持Redis Cluster
+ */
 @Service
 @Slf4j
 public class ShoppingCartServiceImpl implements  ShoppingCartService {
 
+    //份数hash：field为商品标识，value为份数
+    private static final String NUMBER_KEY = "shopping_cart_num_";
+    //商品信息hash：field为商品标识，value为商品信息json
+    private static final String ITEM_KEY = "shopping_cart_item_";
+    //有改动、等待写回数据库的用户id
+    private static final String DIRTY_KEY = "shopping_cart_dirty";
+    //正在写回数据库的用户id，score为取出时间，相当于每个用户的写回租约；写回节点宕机时超时后放回dirty集合
+    private static final String FLUSHING_KEY = "shopping_cart_flushing";
+    private static final Duration FLUSH_TIMEOUT = Duration.ofMinutes(1);
+    //份数hash中的占位field，表示该用户的购物车已从数据库加载（空购物车也要占位）
+    private static final String LOADED_FIELD = "_";
+    private static final Duration CART_TTL = Duration.ofDays(7);
+    //每次写回数据库的用户数
+    private static final int FLUSH_BATCH_SIZE = 200;
+
+    //脚本返回值：购物车还没有从数据库加载到redis
+    private static final long CART_NOT_LOADED = -1;
+    //脚本返回值：购物车中还没有这个商品，需要先查询商品信息
+    private static final long ITEM_MISSING = -2;
+
+    //份数+1并续期、标记写回；KEYS: 份数hash 商品hash dirty集合，ARGV: 商品标识 过期秒数 用户id 商品信息json(可为空)
+    private static final DefaultRedisScript<Long> ADD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 0 then return -1 end " +
+            "if redis.call('hexists', KEYS[2], ARGV[1]) == 0 then " +
+            "  if ARGV[4] == '' then return -2 end " +
+            "  redis.call('hset', KEYS[2], ARGV[1], ARGV[4]) " +
+            "end " +
+            "local n = redis.call('hincrby', KEYS[1], ARGV[1], 1) " +
+            "redis.call('expire', KEYS[1], ARGV[2]) redis.call('expire', KEYS[2], ARGV[2]) " +
+            "redis.call('sadd', KEYS[3], ARGV[3]) " +
+            "return n", Long.class);
+
+    //份数减1，减到0时删除该商品，并续期、标记写回；参数同ADD_SCRIPT（不需要商品信息）
+    private static final DefaultRedisScript<Long> SUB_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 0 then return -1 end " +
+            "local n = 0 " +
+            "if redis.call('hexists', KEYS[1], ARGV[1]) == 1 then " +
+            "  n = redis.call('hincrby', KEYS[1], ARGV[1], -1) " +
+            "  if n <= 0 then redis.call('hdel', KEYS[1], ARGV[1]) redis.call('hdel', KEYS[2], ARGV[1]) n = 0 end " +
+            "end " +
+            "redis.call('expire', KEYS[1], ARGV[2]) redis.call('expire', KEYS[2], ARGV[2]) " +
+            "redis.call('sadd', KEYS[3], ARGV[3]) " +
+            "return n", Long.class);
+
+    //取出一批待写回的用户并登记到写回中集合，同时把超时未完成的写回放回dirty集合；
+    //正在被其他节点写回的用户放回dirty集合，等对方提交后再写，避免旧快照覆盖新快照
+    //KEYS: dirty集合 写回中集合，ARGV: 数量 当前时间 超时时间点
+    private static final DefaultRedisScript<List> CLAIM_DIRTY_SCRIPT = new DefaultRedisScript<>(
+            "local stale = redis.call('zrangebyscore', KEYS[2], '-inf', ARGV[3]) " +
+            "for _, id in ipairs(stale) do redis.call('sadd', KEYS[1], id) redis.call('zrem', KEYS[2], id) end " +
+            "local ids = redis.call('spop', KEYS[1], ARGV[1]) " +
+            "local claimed = {} " +
+            "for _, id in ipairs(ids) do " +
+            "  if redis.call('zscore', KEYS[2], id) then redis.call('sadd', KEYS[1], id) " +
+            "  else redis.call('zadd', KEYS[2], ARGV[2], id) claimed[#claimed + 1] = id end " +
+            "end " +
+            "return claimed", List.class);
+
+    //释放写回租约，只删除自己取出时登记的用户（租约超时后可能已被其他节点重新取出）
+    //KEYS: 写回中集合，ARGV: 取出时间 用户id...
+    private static final DefaultRedisScript<Long> RELEASE_FLUSHING_SCRIPT = new DefaultRedisScript<>(
+            "local n = 0 " +
+            "for i = 2, #ARGV do " +
+            "  local score = redis.call('zscore', KEYS[1], ARGV[i]) " +
+            "  if score and tonumber(score) == tonumber(ARGV[1]) then n = n + redis.call('zrem', KEYS[1], ARGV[i]) end " +
+            "end " +
+            "return n", Long.class);
 
     @Autowired
     private ShoppingCartMapper shoppingCartMapper;
     @Autowired
-    private DishMapper dishMapper;
+    private MenuSnapshot menuSnapshot;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
     @Autowired
-    private SetmealMapper setmealMapper;
+    private ShoppingCartProperties shoppingCartProperties;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
     /**
      * 添加购物车
      * @param shoppingCartDTO
      */
     public void addShoppingCart(ShoppingCartDTO shoppingCartDTO){
-
-        //根据商品是否已经存在写insert/update
-          //查数据：根据userid和商品id（dishId/setmealId）作为条件查询是否已经存在于购物车
         ShoppingCart shoppingCart = new ShoppingCart();
         BeanUtils.copyProperties(shoppingCartDTO,shoppingCart);
         Long userId = BaseContext.getCurrentId();
         shoppingCart.setUserId(userId);
 
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart);
-          //存在，数量+1
-        if(list != null && list.size() >0){
-            ShoppingCart cart = list.get(0);
-            cart.setNumber(cart.getNumber()+1);
-            shoppingCartMapper.updateNumberById(cart);
-        }else {//不存在，新增，数量默认就是1
-            Long dishId = shoppingCartDTO.getDishId();
-            if(dishId != null){
-                //添加的是dish
-                Dish dish = dishMapper.getById(dishId);
-                shoppingCart.setName(dish.getName());
-                shoppingCart.setImage(dish.getImage());
-                shoppingCart.setAmount(dish.getPrice());
-
-
-            }else{
-                //添加的是setmeal
-                Long setmealId = shoppingCartDTO.getSetmealId();
-
-                Setmeal setmeal = setmealMapper.getById(setmealId);
-                shoppingCart.setName(setmeal.getName());
-                shoppingCart.setImage(setmeal.getImage());
-                shoppingCart.setAmount(setmeal.getPrice());
-
-
-            }
+        if (!shoppingCartProperties.isWriteBehind()) {
+            //已有相同商品时数据库中number = number + 1，没有则插入
+            fillItemInfo(shoppingCart);
             shoppingCart.setNumber(1);
-            shoppingCart.setCreateTime(LocalDateTime.now());
-            shoppingCartMapper.insert(shoppingCart);
-
-
+            shoppingCartMapper.insertOrIncrement(shoppingCart);
+            return;
         }
 
-
+        //通常只需一次脚本调用；购物车未加载时先从数据库加载，商品不在购物车中时才查询名称、图片、价格
+        String field = getField(shoppingCart);
+        long result = executeCartScript(ADD_SCRIPT, userId, field, "");
+        if (result == CART_NOT_LOADED) {
+            ensureLoaded(userId);
+            result = executeCartScript(ADD_SCRIPT, userId, field, "");
+        }
+        if (result == ITEM_MISSING) {
+            fillItemInfo(shoppingCart);
+            executeCartScript(ADD_SCRIPT, userId, field, JSON.toJSONString(shoppingCart));
+        }
     }
 
 
@@ -88,14 +160,7 @@ public class ShoppingCartServiceImpl implements  ShoppingCartService {
      * @return
      */
     public List<ShoppingCart> showShoppingCart(){
-        Long userId = BaseContext.getCurrentId();
-
-        ShoppingCart shoppingCart = ShoppingCart.builder()
-                .userId(userId)
-                .build();
-
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart);
-        return list;
+        return list(BaseContext.getCurrentId());
     }
 
     /**
@@ -103,8 +168,7 @@ public class ShoppingCartServiceImpl implements  ShoppingCartService {
      * @param
      */
     public void cleanShoppingCart(){
-        Long userId = BaseContext.getCurrentId();
-        shoppingCartMapper.deleteByUserId(userId);
+        clean(BaseContext.getCurrentId());
     }
 
 
@@ -115,24 +179,239 @@ public class ShoppingCartServiceImpl implements  ShoppingCartService {
     public void subShoppingCart(ShoppingCartDTO shoppingCartDTO) {
         ShoppingCart shoppingCart = new ShoppingCart();
         BeanUtils.copyProperties(shoppingCartDTO,shoppingCart);
-        //设置查询条件，查询当前登录用户的购物车数据
-        shoppingCart.setUserId(BaseContext.getCurrentId());
-
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart);
-
-        if(list != null && list.size() > 0){
-            shoppingCart = list.get(0);
-
-            Integer number = shoppingCart.getNumber();
-            if(number == 1){
-                //当前商品在购物车中的份数为1，直接删除当前记录
-                shoppingCartMapper.deleteById(shoppingCart.getId());
-            }else {
-                //当前商品在购物车中的份数不为1，修改份数即可
-                shoppingCart.setNumber(shoppingCart.getNumber() - 1);
-                shoppingCartMapper.updateNumberById(shoppingCart);
+        Long userId = BaseContext.getCurrentId();
+
+        if (!shoppingCartProperties.isWriteBehind()) {
+            shoppingCart.setUserId(userId);
+            //份数大于1时减1，否则删除；并发减到同一行时也不会出现负数
+            if (shoppingCartMapper.decrementNumber(shoppingCart) == 0) {
+                shoppingCartMapper.deleteIfLast(shoppingCart);
             }
+            return;
+        }
+
+        String field = getField(shoppingCart);
+        if (executeCartScript(SUB_SCRIPT, userId, field, "") == CART_NOT_LOADED) {
+            ensureLoaded(userId);
+            executeCartScript(SUB_SCRIPT, userId, field, "");
+        }
+    }
+
+    /**
+     * 查询指定用户的购物车
+     * @param userId
+     * @return
+     */
+    public List<ShoppingCart> list(Long userId) {
+        if (!shoppingCartProperties.isWriteBehind()) {
+            return shoppingCartMapper.list(ShoppingCart.builder().userId(userId).build());
+        }
+        ensureLoaded(userId);
+        return readFromRedis(userId);
+    }
+
+    /**
+     * 清空指定用户的购物车
+     * @param userId
+     */
+    public void clean(Long userId) {
+        if (!shoppingCartProperties.isWriteBehind()) {
+            shoppingCartMapper.deleteByUserId(userId);
+            return;
         }
+        stringRedisTemplate.delete(Arrays.asList(NUMBER_KEY + userId, ITEM_KEY + userId));
+        stringRedisTemplate.opsForHash().put(NUMBER_KEY + userId, LOADED_FIELD, "0");
+        touch(userId);
+    }
+
+    /**
+     * 批量加入购物车，已有的商品累加份数
+     * @param userId
+     * @param shoppingCartList
+     */
+    public void addBatch(Long userId, List<ShoppingCart> shoppingCartList) {
+        if (!shoppingCartProperties.isWriteBehind()) {
+            shoppingCartList.forEach(shoppingCartMapper::insertOrIncrement);
+            return;
+        }
+        ensureLoaded(userId);
+        HashOperations<String, String, String> hashOps = stringRedisTemplate.opsForHash();
+        for (ShoppingCart cart : shoppingCartList) {
+            String field = getField(cart);
+            Integer number = cart.getNumber();
+            cart.setNumber(null);
+            hashOps.putIfAbsent(ITEM_KEY + userId, field, JSON.toJSONString(cart));
+            hashOps.increment(NUMBER_KEY + userId, field, number);
+        }
+        touch(userId);
+    }
+
+    /**
+     * 把有改动的购物车批量写回数据库
+     * 取出的用户先登记到写回中集合，事务提交后才移除；写回期间再次改动的用户会重新进入dirty集合，
+     * 但要等这次写回释放租约后才能再被取出，同一用户不会有两个节点同时写回；
+     * 节点在提交前宕机时，超过FLUSH_TIMEOUT后这些用户被放回dirty集合重新写回
+     */
+    public void flushDirtyCarts() {
+        long now = System.currentTimeMillis();
+        List<String> dirtyUserIds = stringRedisTemplate.execute(CLAIM_DIRTY_SCRIPT, Arrays.asList(DIRTY_KEY, FLUSHING_KEY),
+                String.valueOf(FLUSH_BATCH_SIZE), String.valueOf(now), String.valueOf(now - FLUSH_TIMEOUT.toMillis()));
+        if (dirtyUserIds == null || dirtyUserIds.isEmpty()) {
+            return;
+        }
+        String[] members = dirtyUserIds.toArray(new String[0]);
+        List<String> leaseArgs = new ArrayList<>();
+        leaseArgs.add(String.valueOf(now));
+        leaseArgs.addAll(dirtyUserIds);
+
+        try {
+            List<Long> userIds = new ArrayList<>();
+            List<ShoppingCart> shoppingCartList = new ArrayList<>();
+            for (String id : dirtyUserIds) {
+                Long userId = Long.valueOf(id);
+                //redis中的购物车已经过期，数据库中的就是最新数据，不能覆盖
+                if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(NUMBER_KEY + userId))) {
+                    continue;
+                }
+                userIds.add(userId);
+                shoppingCartList.addAll(readFromRedis(userId));
+            }
+
+            transactionTemplate.executeWithoutResult(status -> {
+                if (userIds.size() > 0) {
+                    shoppingCartMapper.deleteByUserIds(userIds);
+                }
+                if (shoppingCartList.size() > 0) {
+                    shoppingCartMapper.insertBatch(shoppingCartList);
+                }
+            });
+            log.info("购物车写回数据库：用户{}个，商品{}条", userIds.size(), shoppingCartList.size());
+        } catch (RuntimeException e) {
+            //写回失败，重新标记，下次再写
+            stringRedisTemplate.opsForSet().add(DIRTY_KEY, members);
+            releaseFlushing(leaseArgs);
+            throw e;
+        }
+        releaseFlushing(leaseArgs);
+    }
+
+    /**
+     * 释放本次写回取得的租约
+     * @param leaseArgs 取出时间 + 用户id
+     */
+    private void releaseFlushing(List<String> leaseArgs) {
+        stringRedisTemplate.execute(RELEASE_FLUSHING_SCRIPT, Collections.singletonList(FLUSHING_KEY), leaseArgs.toArray());
+    }
+
+    /**
+     * redis中没有该用户的购物车时从数据库加载
+     * @param userId
+     */
+    private void ensureLoaded(Long userId) {
+        if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(NUMBER_KEY + userId))) {
+            return;
+        }
+
+        List<ShoppingCart> list = shoppingCartMapper.list(ShoppingCart.builder().userId(userId).build());
+        HashOperations<String, String, String> hashOps = stringRedisTemplate.opsForHash();
+        for (ShoppingCart cart : list) {
+            String field = getField(cart);
+            String number = cart.getNumber().toString();
+            cart.setId(null);
+            cart.setNumber(null);
+            hashOps.putIfAbsent(ITEM_KEY + userId, field, JSON.toJSONString(cart));
+            //已经有并发请求加载过时不覆盖，避免丢失期间的加减
+            hashOps.putIfAbsent(NUMBER_KEY + userId, field, number);
+        }
+        hashOps.putIfAbsent(NUMBER_KEY + userId, LOADED_FIELD, "0");
+        stringRedisTemplate.expire(NUMBER_KEY + userId, CART_TTL);
+        stringRedisTemplate.expire(ITEM_KEY + userId, CART_TTL);
+    }
+
+    private List<ShoppingCart> readFromRedis(Long userId) {
+        HashOperations<String, String, String> hashOps = stringRedisTemplate.opsForHash();
+        Map<String, String> numbers = hashOps.entries(NUMBER_KEY + userId);
+        Map<String, String> items = hashOps.entries(ITEM_KEY + userId);
+
+        List<ShoppingCart> list = new ArrayList<>();
+        numbers.forEach((field, number) -> {
+            String item = items.get(field);
+            if (LOADED_FIELD.equals(field) || item == null || Integer.parseInt(number) <= 0) {
+                return;
+            }
+            ShoppingCart cart = JSON.parseObject(item, ShoppingCart.class);
+            cart.setUserId(userId);
+            cart.setNumber(Integer.valueOf(number));
+            list.add(cart);
+        });
+        return list.stream()
+                .sorted(Comparator.comparing(ShoppingCart::getCreateTime, Comparator.nullsLast(Comparator.naturalOrder())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 从菜单快照查询商品的名称、图片、价格，商品已被删除时拒绝加入购物车
+     * @param shoppingCart
+     */
+    private void fillItemInfo(ShoppingCart shoppingCart) {
+        Long dishId = shoppingCart.getDishId();
+        if(dishId != null){
+            //添加的是dish
+            Dish dish = menuSnapshot.getDish(dishId);
+            if (dish == null) {
+                throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_ITEM_NOT_FOUND);
+            }
+            shoppingCart.setName(dish.getName());
+            shoppingCart.setImage(dish.getImage());
+            shoppingCart.setAmount(dish.getPrice());
+        }else{
+            //添加的是setmeal
+            Setmeal setmeal = menuSnapshot.getSetmeal(shoppingCart.getSetmealId());
+            if (setmeal == null) {
+                throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_ITEM_NOT_FOUND);
+            }
+            shoppingCart.setName(setmeal.getName());
+            shoppingCart.setImage(setmeal.getImage());
+            shoppingCart.setAmount(setmeal.getPrice());
+        }
+        shoppingCart.setCreateTime(LocalDateTime.now());
+    }
+
+    /**
+     * 购物车中商品的标识：菜品id+口味 或 套餐id
+     * @param shoppingCart
+     * @return
+     */
+    private String getField(ShoppingCart shoppingCart) {
+        if (shoppingCart.getDishId() != null) {
+            String flavor = shoppingCart.getDishFlavor() == null ? "" : shoppingCart.getDishFlavor();
+            return "dish_" + shoppingCart.getDishId() + "_" + flavor;
+        }
+        return "setmeal_" + shoppingCart.getSetmealId();
+    }
+
+    /**
+     * 执行加减份数的脚本
+     * @param script
+     * @param userId
+     * @param field
+     * @param item 商品信息json，不需要时传空字符串
+     * @return 脚本返回值
+     */
+    private long executeCartScript(DefaultRedisScript<Long> script, Long userId, String field, String item) {
+        Long result = stringRedisTemplate.execute(script, Arrays.asList(NUMBER_KEY + userId, ITEM_KEY + userId, DIRTY_KEY),
+                field, String.valueOf(CART_TTL.getSeconds()), userId.toString(), item);
+        return result == null ? CART_NOT_LOADED : result;
+    }
+
+    /**
+     * 续期并标记需要写回数据库
+     * @param userId
+     */
+    private void touch(Long userId) {
+        stringRedisTemplate.expire(NUMBER_KEY + userId, CART_TTL);
+        stringRedisTemplate.expire(ITEM_KEY + userId, CART_TTL);
+        stringRedisTemplate.opsForSet().add(DIRTY_KEY, userId.toString());
     }
 
 }
@@ -0,0 +1,38 @@
+package com.sky.task;
+
+import com.sky.service.BusinessStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+@Component
+@Slf4j
+public class BusinessStatsTask {
+
+    //每天结转时重新核对最近几天，兜底处理跨天完成的订单
+    private static final int RECHECK_DAYS = 3;
+
+    @Autowired
+    private BusinessStatsService businessStatsService;
+
+    /**
+     * 每天凌晨2点（派送订单处理完之后）结转前几天的营业数据
+     */
+    @Scheduled(cron = "0 0 2 * * ?")
+    public void closeOutDays() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        log.info("结转营业数据：{} 至 {}", yesterday.minusDays(RECHECK_DAYS - 1), yesterday);
+        businessStatsService.rollup(yesterday.minusDays(RECHECK_DAYS - 1), yesterday);
+    }
+
+    /**
+     * 每5分钟重新汇总订单状态发生变化的过去日期
+     */
+    @Scheduled(cron = "0 0/5 * * * ?")
+    public void processDirtyDates() {
+        businessStatsService.rollupDirtyDates();
+    }
+}
@@ -0,0 +1,47 @@
+package com.sky.task;
+
+import com.sky.properties.OrderTaskProperties;
+import com.sky.service.OrderOutboxService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 订单消息发件箱中继：投递提交后即时投递失败、或节点宕机遗留的消息，并清理已投递的消息
+ */
+@Component
+@Slf4j
+public class OrderOutboxTask {
+
+    @Autowired
+    private OrderOutboxService orderOutboxService;
+    @Autowired
+    private OrderTaskProperties orderTaskProperties;
+
+    /**
+     * 每秒投递一次，一批满了说明还有积压，继续投递
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void relay() {
+        try {
+            int count;
+            do {
+                count = orderOutboxService.relayBatch();
+            } while (count == orderTaskProperties.getOutboxBatchSize());
+        } catch (Exception e) {
+            log.error("订单消息投递失败", e);
+        }
+    }
+
+    /**
+     * 每小时清理一次已投递的消息
+     */
+    @Scheduled(cron = "0 30 * * * ?")
+    public void prune() {
+        int count = orderOutboxService.prune();
+        if (count > 0) {
+            log.info("清理已投递的订单消息：{}条", count);
+        }
+    }
+}
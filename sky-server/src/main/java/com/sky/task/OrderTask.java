@@ -3,14 +3,15 @@ package com.sky.task;
 
 import com.sky.entity.Orders;
 import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderTaskProperties;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.ibatis.annotations.Mapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.List;
 
 @Component
 @Slf4j
@@ -18,54 +19,41 @@ public class OrderTask {
 
     @Autowired
     private OrderMapper orderMapper;
+    @Autowired
+    private TaskLock taskLock;
+    @Autowired
+    private OrderTaskProperties orderTaskProperties;
 
 
-    /**     * 每分钟扫描一次，处理超时未支付订单
-     */
-    @Scheduled(cron = "0 * * * * ?") //每分钟
-
-    public void processTimeoutOrders() {
-        log.info("Processing timeout orders:{}", LocalDateTime.now());
-
-        LocalDateTime time = LocalDateTime.now().plusMinutes(-15);
-
-        List<Orders> ordersList = orderMapper.getByStatusAndOrderTimeLT(Orders.PENDING_PAYMENT, time );
-
-        if(ordersList != null && ordersList.size()>0){
-            for(Orders orders : ordersList){
-                orders.setStatus(Orders.CANCELLED);
-                orders.setCancelReason("订单超时，系统自动取消");
-                orders.setCancelTime(LocalDateTime.now());
-                orderMapper.update(orders);
-                log.info("Order ID:{} has been cancelled due to 支付 timeout.", orders.getId());
-            }
-        }
-
-    }
-
-
+    //超时未支付订单的取消由 OrderTimeoutQueue 按每个订单的截止时间处理，不再每分钟扫描订单表
 
 
     /**
      * 每天凌晨1点处理配送中的订单为已完成
+     * 按块执行条件update，不把订单加载到内存；多节点部署时只有抢到锁的节点执行
      */
     @Scheduled(cron = "0 0 1 * * ?")
     public void processDeliveryOrders() {
-        log.info("定时处理派送中的订单:{}", LocalDateTime.now());
-
-
-
-        List<Orders> ordersList = orderMapper.getByStatusAndOrderTimeLT(Orders.DELIVERY_IN_PROGRESS, LocalDateTime.now().plusMinutes(-60));
-        if(ordersList != null && ordersList.size()>0){
-            for(Orders orders : ordersList){
-                orders.setStatus(Orders.COMPLETED);
-                orders.setCancelReason("订单超时，系统自动取消");
-                orders.setCancelTime(LocalDateTime.now());
-                orderMapper.update(orders);
-                log.info("Order ID:{} has been cancelled due to 派送 timeout.", orders.getId());
-            }
+        if (!taskLock.tryLock("processDeliveryOrders", Duration.ofSeconds(orderTaskProperties.getLockSeconds()))) {
+            log.info("其他节点正在处理派送中的订单，跳过");
+            return;
+        }
+        try {
+            log.info("定时处理派送中的订单:{}", LocalDateTime.now());
+
+            LocalDateTime time = LocalDateTime.now().plusMinutes(-60);
+            int chunkSize = orderTaskProperties.getChunkSize();
+            int total = 0;
+            int updated;
+            do {
+                updated = orderMapper.completeByStatusAndOrderTimeLT(Orders.DELIVERY_IN_PROGRESS, time, LocalDateTime.now(), chunkSize);
+                total += updated;
+            } while (updated == chunkSize);
+
+            log.info("{} orders have been completed due to 派送 timeout.", total);
+        } finally {
+            taskLock.unlock("processDeliveryOrders");
         }
-
     }
 
 
@@ -0,0 +1,153 @@
+package com.sky.task;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderTaskProperties;
+import com.sky.service.BusinessStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 超时未支付订单的延迟队列
+ * 下单时把订单的取消截止时间写入redis有序集合（score为截止时间），每秒取出到期的订单批量取消，
+ * 代替每分钟扫描订单表；redis保证重启和多节点下任务不丢失
+ */
+@Component
+@Slf4j
+public class OrderTimeoutQueue implements ApplicationRunner {
+
+    public static final String KEY = "order_timeout";
+    //支付超时时间(分钟)
+    public static final int PAY_TIMEOUT_MINUTES = 15;
+
+    //原子地取出并删除到期的订单，多个节点同时执行时每个订单只会被一个节点取到
+    //返回 [id1, score1, id2, score2, ...]，取消失败时按原截止时间放回队列
+    private static final DefaultRedisScript<List> POP_DUE_SCRIPT = new DefaultRedisScript<>(
+            "local items = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[1], 'withscores', 'limit', 0, ARGV[2]) " +
+            "local ids = {} " +
+            "for i = 1, #items, 2 do ids[#ids + 1] = items[i] end " +
+            "if #ids > 0 then redis.call('zrem', KEYS[1], unpack(ids)) end " +
+            "return items", List.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private BusinessStatsService businessStatsService;
+    @Autowired
+    private OrderTaskProperties orderTaskProperties;
+
+    /**
+     * 下单后登记订单的支付截止时间
+     *
+     * @param orderId
+     * @param orderTime
+     */
+    public void schedule(Long orderId, LocalDateTime orderTime) {
+        stringRedisTemplate.opsForZSet().add(KEY, orderId.toString(), toEpochMilli(orderTime.plusMinutes(PAY_TIMEOUT_MINUTES)));
+    }
+
+    /**
+     * 订单已支付，不再需要超时取消
+     *
+     * @param orderId
+     */
+    public void cancelSchedule(Long orderId) {
+        stringRedisTemplate.opsForZSet().remove(KEY, orderId.toString());
+    }
+
+    /**
+     * 每秒取出到期的订单，批量取消
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void processDueOrders() {
+        //每次最多取出的到期订单数
+        int chunkSize = orderTaskProperties.getChunkSize();
+        Map<String, Double> due;
+        do {
+            List<String> items = stringRedisTemplate.execute(POP_DUE_SCRIPT, Collections.singletonList(KEY),
+                    String.valueOf(System.currentTimeMillis()), String.valueOf(chunkSize));
+            if (items == null || items.isEmpty()) {
+                return;
+            }
+            due = new LinkedHashMap<>();
+            for (int i = 0; i + 1 < items.size(); i += 2) {
+                due.put(items.get(i), Double.valueOf(items.get(i + 1)));
+            }
+
+            List<Long> orderIds = due.keySet().stream().map(Long::valueOf).collect(Collectors.toList());
+            int cancelled;
+            try {
+                //只取消仍处于待付款状态的订单，已支付的订单不受影响
+                cancelled = orderMapper.cancelByIds(orderIds, Orders.PENDING_PAYMENT, "订单超时，系统自动取消", LocalDateTime.now());
+            } catch (Exception e) {
+                //取消失败时按原截止时间放回队列，下一秒重试
+                requeue(due);
+                log.error("超时订单取消失败，{}个订单已放回队列", due.size(), e);
+                return;
+            }
+
+            if (cancelled > 0) {
+                //订单可能是前一天下的，按下单时间（截止时间减去支付超时时间）标记对应日期需要重新汇总
+                Set<LocalDate> orderDays = new HashSet<>();
+                for (Double deadline : due.values()) {
+                    LocalDateTime orderTime = toLocalDateTime(deadline.longValue()).minusMinutes(PAY_TIMEOUT_MINUTES);
+                    if (orderDays.add(orderTime.toLocalDate())) {
+                        businessStatsService.markDirty(orderTime);
+                    }
+                }
+            }
+            log.info("到期订单{}个，因支付超时取消{}个", orderIds.size(), cancelled);
+        } while (due.size() == chunkSize);
+    }
+
+    private void requeue(Map<String, Double> due) {
+        Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+        due.forEach((id, deadline) -> tuples.add(new DefaultTypedTuple<>(id, deadline)));
+        stringRedisTemplate.opsForZSet().add(KEY, tuples);
+    }
+
+    /**
+     * 启动时把所有待付款订单登记到延迟队列，补上上线前下的订单和节点宕机时已取出未处理的订单
+     *
+     * @param args
+     */
+    public void run(ApplicationArguments args) {
+        List<Orders> ordersList = orderMapper.getIdAndOrderTimeByStatus(Orders.PENDING_PAYMENT);
+        for (Orders orders : ordersList) {
+            //已在队列中的订单保持原截止时间
+            stringRedisTemplate.opsForZSet().addIfAbsent(KEY, orders.getId().toString(),
+                    toEpochMilli(orders.getOrderTime().plusMinutes(PAY_TIMEOUT_MINUTES)));
+        }
+        log.info("待付款订单{}个已登记到超时队列", ordersList.size());
+    }
+
+    private long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private LocalDateTime toLocalDateTime(long epochMilli) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMilli), ZoneId.systemDefault());
+    }
+}
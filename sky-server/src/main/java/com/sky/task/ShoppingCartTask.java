@@ -0,0 +1,27 @@
+package com.sky.task;
+
+import com.sky.service.ShoppingCartService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 购物车写回：redis中有改动的购物车定时批量同步到shopping_cart表
+ */
+@Component
+@Slf4j
+public class ShoppingCartTask {
+
+    @Autowired
+    private ShoppingCartService shoppingCartService;
+
+    @Scheduled(fixedDelay = 2000)
+    public void flushDirtyCarts() {
+        try {
+            shoppingCartService.flushDirtyCarts();
+        } catch (Exception e) {
+            log.error("购物车写回数据库失败", e);
+        }
+    }
+}
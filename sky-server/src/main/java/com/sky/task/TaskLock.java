@@ -0,0 +1,53 @@
+package com.sky.task;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * 定时任务锁：多个节点部署时同一个任务只由抢到锁的节点执行
+ */
+@Component
+@Slf4j
+public class TaskLock {
+
+    private static final String KEY_PREFIX = "task_lock:";
+
+    //只删除自己持有的锁
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    //当前节点的标识
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 尝试获取锁
+     *
+     * @param name 任务名
+     * @param ttl  锁过期时间
+     * @return
+     */
+    public boolean tryLock(String name, Duration ttl) {
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + name, nodeId, ttl);
+        return Boolean.TRUE.equals(locked);
+    }
+
+    /**
+     * 释放锁
+     *
+     * @param name 任务名
+     */
+    public void unlock(String name) {
+        stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(KEY_PREFIX + name), nodeId);
+    }
+}
@@ -0,0 +1,93 @@
+package com.sky.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 单个会话的发送队列：消息先入有界队列，再通过异步remote逐条发送，调用方线程不会被慢客户端阻塞
+ */
+@Slf4j
+public class SessionSender implements SendHandler {
+
+    //每个会话最多积压的消息数，超出视为慢客户端
+    private static final int QUEUE_CAPACITY = 64;
+    //单条消息的发送超时时间(毫秒)
+    private static final long SEND_TIMEOUT_MSEC = 5 * 1000;
+
+    private final String sid;
+    private final Session session;
+    private final BlockingQueue<String> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    //同一会话同一时刻只能有一条异步发送在进行
+    private final AtomicBoolean sending = new AtomicBoolean(false);
+    private volatile boolean failed = false;
+
+    public SessionSender(String sid, Session session) {
+        this.sid = sid;
+        this.session = session;
+        session.getAsyncRemote().setSendTimeout(SEND_TIMEOUT_MSEC);
+    }
+
+    /**
+     * 消息入队，不阻塞
+     *
+     * @param message
+     * @return false表示会话已发送失败或队列已满，需要剔除
+     */
+    public boolean offer(String message) {
+        if (failed) {
+            return false;
+        }
+        //队列中已有相同且尚未发出的消息，直接合并
+        if (queue.contains(message)) {
+            return true;
+        }
+        if (!queue.offer(message)) {
+            return false;
+        }
+        drain();
+        return true;
+    }
+
+    /**
+     * 异步发送完成回调，继续发送下一条
+     *
+     * @param result
+     */
+    public void onResult(SendResult result) {
+        if (!result.isOK()) {
+            log.warn("WebSocket消息发送失败，sid：{}", sid, result.getException());
+            failed = true;
+            queue.clear();
+        }
+        sending.set(false);
+        drain();
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    private void drain() {
+        while (!failed && !queue.isEmpty() && sending.compareAndSet(false, true)) {
+            String message = queue.poll();
+            if (message == null) {
+                sending.set(false);
+                continue;
+            }
+            try {
+                session.getAsyncRemote().sendText(message, this);
+            } catch (Exception e) {
+                log.warn("WebSocket消息发送失败，sid：{}", sid, e);
+                failed = true;
+                sending.set(false);
+            }
+            return;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.sky.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 集群内WebSocket群发：任意节点发布一次消息到redis频道，每个节点收到后推送给连接在本节点上的客户端
+ */
+@Component
+@Slf4j
+public class WebSocketBroadcaster implements MessageListener {
+
+    public static final String CHANNEL = "ws_broadcast";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private WebSocketServer webSocketServer;
+
+    //本节点的投递统计
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder receivedCount = new LongAdder();
+    private final LongAdder deliveredCount = new LongAdder();
+    private final LongAdder publishFailedCount = new LongAdder();
+    private final LongAdder noSubscriberCount = new LongAdder();
+
+    /**
+     * 发布消息到redis频道，失败时不做本节点兜底，由调用方决定是否重试
+     * redis pub/sub不保存消息，没有节点订阅时消息直接丢弃，所以返回收到消息的订阅数
+     *
+     * @param message
+     * @return 收到消息的订阅数，0表示没有节点订阅，-1表示发布失败
+     */
+    public long publish(String message) {
+        try {
+            //StringRedisTemplate#convertAndSend不返回订阅数，直接调用PUBLISH
+            Long receivers = stringRedisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(
+                    CHANNEL.getBytes(StandardCharsets.UTF_8), message.getBytes(StandardCharsets.UTF_8)));
+            if (receivers == null || receivers == 0) {
+                noSubscriberCount.increment();
+                return 0;
+            }
+            publishedCount.increment();
+            return receivers;
+        } catch (Exception e) {
+            log.warn("WebSocket消息发布失败", e);
+            publishFailedCount.increment();
+            return -1;
+        }
+    }
+
+    /**
+     * 收到redis频道消息，推送给本节点的客户端
+     *
+     * @param message
+     * @param pattern
+     */
+    public void onMessage(Message message, byte[] pattern) {
+        receivedCount.increment();
+        deliveredCount.add(webSocketServer.sendToLocalClient(new String(message.getBody(), StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * 本节点投递统计
+     *
+     * @return
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("localSessions", webSocketServer.getLocalSessionCount());
+        map.put("publishedCount", publishedCount.sum());
+        map.put("publishFailedCount", publishFailedCount.sum());
+        map.put("noSubscriberCount", noSubscriberCount.sum());
+        map.put("receivedCount", receivedCount.sum());
+        map.put("deliveredCount", deliveredCount.sum());
+        return map;
+    }
+}
@@ -1,33 +1,35 @@
 package com.sky.websocket;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
+import javax.websocket.CloseReason;
 import javax.websocket.OnClose;
 import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
 import javax.websocket.Session;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
-import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * WebSocket服务
  */
 @Component
 @ServerEndpoint("/ws/{sid}")   //路径匹配，和controller中的@RequestMapping类似
+@Slf4j
 public class WebSocketServer {
 
-    //存放会话对象
-    private static Map<String, Session> sessionMap = new HashMap();
+    //存放会话对象（每个连接都会创建一个endpoint实例，所以使用静态的并发map）
+    private static Map<String, SessionSender> sessionMap = new ConcurrentHashMap<>();
 
     /**
      * 连接建立成功调用的方法
      */
     @OnOpen
     public void onOpen(Session session, @PathParam("sid") String sid) {
-        System.out.println("客户端：" + sid + "建立连接");
-        sessionMap.put(sid, session);
+        log.info("客户端：{}建立连接", sid);
+        sessionMap.put(sid, new SessionSender(sid, session));
     }
 
     /**
@@ -37,35 +39,62 @@ public class WebSocketServer {
      */
     @OnMessage
     public void onMessage(String message, @PathParam("sid") String sid) {
-        System.out.println("收到来自客户端：" + sid + "的信息:" + message);
+        log.info("收到来自客户端：{}的信息:{}", sid, message);
     }
 
     /**
      * 连接关闭调用的方法
+     * 同一sid可能已经重连，只移除属于当前会话的发送器，避免旧连接迟到的关闭事件移除新连接
      *
+     * @param session
      * @param sid
      */
     @OnClose
-    public void onClose(@PathParam("sid") String sid) {
-        System.out.println("连接断开:" + sid);
-        sessionMap.remove(sid);
+    public void onClose(Session session, @PathParam("sid") String sid) {
+        log.info("连接断开:{}", sid);
+        SessionSender sender = sessionMap.get(sid);
+        if (sender != null && sender.getSession() == session) {
+            sessionMap.remove(sid, sender);
+        }
     }
 
     /**
-     * 群发
+     * 向连接在本节点上的所有客户端群发：只负责把消息放入各会话的发送队列，不等待发送完成
+     * 集群内群发请使用 WebSocketBroadcaster#publish
      *
      * @param message
+     * @return 成功放入发送队列的会话数
      */
-    public void sendToAllClient(String message) {
-        Collection<Session> sessions = sessionMap.values();
-        for (Session session : sessions) {
-            try {
-                //服务器向客户端发送消息
-                session.getBasicRemote().sendText(message);
-            } catch (Exception e) {
-                e.printStackTrace();
+    public int sendToLocalClient(String message) {
+        int delivered = 0;
+        for (Map.Entry<String, SessionSender> entry : sessionMap.entrySet()) {
+            if (entry.getValue().offer(message)) {
+                delivered++;
+            } else {
+                //发送失败或消息积压过多，剔除该客户端，由前端重连
+                log.warn("客户端：{}发送失败或消息积压，断开连接", entry.getKey());
+                evict(entry.getKey(), entry.getValue());
             }
         }
+        return delivered;
+    }
+
+    /**
+     * 本节点当前的连接数
+     *
+     * @return
+     */
+    public int getLocalSessionCount() {
+        return sessionMap.size();
+    }
+
+    private void evict(String sid, SessionSender sender) {
+        sessionMap.remove(sid, sender);
+        try {
+            sender.getSession().close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "slow consumer"));
+        } catch (Exception e) {
+            log.warn("关闭连接失败:{}", sid, e);
+        }
     }
 
 }
@@ -0,0 +1,16 @@
+-- 每日营业数据汇总表：过去日期的报表直接读取该表，当天数据实时计算
+create table if not exists daily_business_stats
+(
+    date                       date                                  not null comment '日期' primary key,
+    turnover                   decimal(12, 2) default 0.00           not null comment '营业额（已完成订单金额）',
+    order_count                int            default 0              not null comment '订单总数',
+    valid_order_count          int            default 0              not null comment '有效订单数',
+    new_users                  int            default 0              not null comment '新增用户数',
+    pending_payment_count      int            default 0              not null comment '待付款订单数',
+    to_be_confirmed_count      int            default 0              not null comment '待接单订单数',
+    confirmed_count            int            default 0              not null comment '已接单订单数',
+    delivery_in_progress_count int            default 0              not null comment '派送中订单数',
+    completed_count            int            default 0              not null comment '已完成订单数',
+    cancelled_count            int            default 0              not null comment '已取消订单数',
+    update_time                datetime                              null comment '汇总时间'
+) comment '每日营业数据汇总';
@@ -0,0 +1,4 @@
+-- 游标分页按 (时间, id) 倒序查找下一页，InnoDB二级索引自带主键id，建在时间列上即可覆盖排序和定位
+alter table orders add index idx_order_time (order_time);
+alter table dish add index idx_create_time (create_time);
+alter table employee add index idx_create_time (create_time);
@@ -0,0 +1,17 @@
+-- 订单消息发件箱：和订单状态在同一个事务中写入，中继任务批量投递（至少一次），投递后定期清理
+-- 多节点中继先用 select ... for update skip locked 认领一批消息（写入租约后立即提交），再在事务外推送，需要MySQL 8.0及以上
+create table if not exists order_outbox
+(
+    id           bigint auto_increment comment '主键' primary key,
+    event_type   varchar(32)                  not null comment '事件类型',
+    order_id     bigint                       not null comment '订单id',
+    number       varchar(50)                  null comment '订单号',
+    status       tinyint  default 0           not null comment '投递状态 0待投递 1已投递 2投递失败',
+    retry_count  int      default 0           not null comment '投递失败次数',
+    lease_owner  varchar(36)                  null comment '认领本条消息的中继批次',
+    lease_until  datetime                     null comment '认领租约到期时间，投递失败后为下次重试时间',
+    create_time  datetime                     not null comment '创建时间',
+    deliver_time datetime                     null comment '投递时间',
+    key idx_status_id (status, id),
+    key idx_deliver_time (deliver_time)
+) comment '订单消息发件箱';
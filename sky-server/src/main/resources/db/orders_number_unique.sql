@@ -0,0 +1,3 @@
+-- 订单号改为雪花算法生成后全局唯一，按订单号查询订单走唯一索引
+-- 已有历史订单号重复时需先处理重复数据再执行
+alter table orders add unique key uk_number (number);
@@ -0,0 +1,29 @@
+-- 购物车唯一索引：同一用户的同一商品只保留一行，加购使用 insert ... on duplicate key update 原子累加
+-- dish_id/setmeal_id/dish_flavor 可能为null，唯一索引不会把null视为相同，所以建在生成列上
+-- 生成列把null和''视为相同，合并重复行时也按同一个表达式分组
+
+-- 先合并已有的重复行：每组保留id最小的一行，份数累加到这一行上
+create temporary table shopping_cart_merge as
+select user_id,
+       concat(ifnull(dish_id, ''), ':', ifnull(setmeal_id, ''), ':', ifnull(dish_flavor, '')) item_key,
+       min(id) id,
+       sum(number) number
+from shopping_cart
+group by user_id, concat(ifnull(dish_id, ''), ':', ifnull(setmeal_id, ''), ':', ifnull(dish_flavor, ''))
+having count(*) > 1;
+
+update shopping_cart sc join shopping_cart_merge m on sc.id = m.id
+set sc.number = m.number;
+
+delete sc from shopping_cart sc
+join shopping_cart_merge m
+  on m.user_id = sc.user_id
+ and m.item_key = concat(ifnull(sc.dish_id, ''), ':', ifnull(sc.setmeal_id, ''), ':', ifnull(sc.dish_flavor, ''))
+ and m.id < sc.id;
+
+drop temporary table shopping_cart_merge;
+
+alter table shopping_cart
+    add column item_key varchar(100)
+        as (concat(ifnull(dish_id, ''), ':', ifnull(setmeal_id, ''), ':', ifnull(dish_flavor, ''))) stored comment '商品标识',
+    add unique key uk_user_item (user_id, item_key);
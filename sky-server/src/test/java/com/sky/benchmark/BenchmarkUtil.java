@@ -0,0 +1,94 @@
+package com.sky.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 简单计时基准：先预热，再多轮计时取中位数，结果打印到控制台
+ * 只用来对比同一台机器上优化前后的差异，不对绝对数值做断言；标注@Tag("benchmark")，mvn test -Pbenchmark 时执行
+ */
+public class BenchmarkUtil {
+
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int MEASURE_ROUNDS = 5;
+
+    /**
+     * 被测操作
+     */
+    public interface Operation {
+        void run() throws Exception;
+    }
+
+    /**
+     * 单线程执行operations次，返回每秒操作数
+     *
+     * @param operations 每轮执行次数
+     * @param operation
+     * @return 多轮计时的中位数
+     */
+    public static double opsPerSecond(int operations, Operation operation) throws Exception {
+        return opsPerSecond(1, operations, operation);
+    }
+
+    /**
+     * threads个线程同时开始，各执行operationsPerThread次，返回总的每秒操作数
+     *
+     * @param threads
+     * @param operationsPerThread 每轮每个线程的执行次数
+     * @param operation
+     * @return 多轮计时的中位数
+     */
+    public static double opsPerSecond(int threads, int operationsPerThread, Operation operation) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                runRound(pool, threads, operationsPerThread, operation);
+            }
+            double[] results = new double[MEASURE_ROUNDS];
+            for (int i = 0; i < MEASURE_ROUNDS; i++) {
+                long nanos = runRound(pool, threads, operationsPerThread, operation);
+                results[i] = (double) threads * operationsPerThread * 1_000_000_000L / nanos;
+            }
+            Arrays.sort(results);
+            return results[MEASURE_ROUNDS / 2];
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 打印一行结果
+     *
+     * @param name
+     * @param opsPerSecond
+     */
+    public static void report(String name, double opsPerSecond) {
+        System.out.printf("[benchmark] %-50s %,14.0f ops/s %,12.2f us/op%n", name, opsPerSecond, 1_000_000 / opsPerSecond);
+    }
+
+    private static long runRound(ExecutorService pool, int threads, int operations, Operation operation) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(pool.submit((Callable<Void>) () -> {
+                start.await();
+                for (int j = 0; j < operations; j++) {
+                    operation.run();
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        return System.nanoTime() - begin;
+    }
+}
@@ -0,0 +1,102 @@
+package com.sky.config;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 阻塞IO为主的请求在平台线程池与虚拟线程上的吞吐量和p99延迟
+ * 每个请求阻塞BLOCK_MILLIS模拟等待数据库/redis，平台线程池大小和Tomcat默认的最大线程数(200)一致；
+ * 虚拟线程部分需要JDK 21，低版本JDK上跳过
+ */
+@Tag("benchmark")
+public class VirtualThreadBenchmarkTest {
+
+    private static final int REQUESTS = 5000;
+    private static final long BLOCK_MILLIS = 20;
+    private static final int PLATFORM_THREADS = 200;
+
+    @Test
+    public void platformThreads() throws Exception {
+        run("platform threads (pool=" + PLATFORM_THREADS + ")", () -> Executors.newFixedThreadPool(PLATFORM_THREADS));
+    }
+
+    @Test
+    public void virtualThreads() throws Exception {
+        assumeTrue(isVirtualThreadSupported(), "虚拟线程需要JDK 21及以上");
+        //使用VirtualThreadConfiguration中创建执行器的方法
+        run("virtual threads (thread per request)", () -> {
+            ThreadFactory threadFactory = ReflectionTestUtils.invokeMethod(VirtualThreadConfiguration.class,
+                    "virtualThreadFactory", "benchmark-vt-");
+            return ReflectionTestUtils.invokeMethod(VirtualThreadConfiguration.class,
+                    "newThreadPerTaskExecutor", threadFactory);
+        });
+    }
+
+    private interface ExecutorFactory {
+        ExecutorService create();
+    }
+
+    /**
+     * 同时提交REQUESTS个请求，统计吞吐量和从提交到完成的延迟，先预热一轮
+     */
+    private void run(String name, ExecutorFactory executorFactory) throws Exception {
+        ExecutorService executor = executorFactory.create();
+        try {
+            runRound(executor);
+            long[] latencies = new long[REQUESTS];
+            long wallNanos = runRound(executor, latencies);
+
+            Arrays.sort(latencies);
+            System.out.printf("[benchmark] %-50s %,10.0f req/s  p50 %,8.1f ms  p99 %,8.1f ms%n", name,
+                    REQUESTS * 1_000_000_000.0 / wallNanos,
+                    latencies[REQUESTS / 2] / 1_000_000.0,
+                    latencies[REQUESTS * 99 / 100] / 1_000_000.0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long runRound(ExecutorService executor) throws Exception {
+        return runRound(executor, new long[REQUESTS]);
+    }
+
+    private long runRound(ExecutorService executor, long[] latencies) throws Exception {
+        CountDownLatch done = new CountDownLatch(REQUESTS);
+        long begin = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            int index = i;
+            long submitted = System.nanoTime();
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(BLOCK_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                latencies[index] = System.nanoTime() - submitted;
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.MINUTES));
+        return System.nanoTime() - begin;
+    }
+
+    private static boolean isVirtualThreadSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.sky.controller.notify;
+
+import com.alibaba.druid.support.json.JSONUtils;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.benchmark.BenchmarkUtil;
+import com.sky.properties.WeChatProperties;
+import com.sky.service.OrderService;
+import com.wechat.pay.contrib.apache.httpclient.util.AesUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 支付成功回调的处理速度：优化前（逐行读取、两次解析json、每次新建AesUtil）与当前实现对比
+ * 订单业务处理用mock代替，只比较读取、解密和响应的开销
+ */
+@Tag("benchmark")
+public class PayNotifyControllerBenchmarkTest {
+
+    private static final String API_V3_KEY = "0123456789abcdef0123456789abcdef";
+    private static final String NONCE = "0123456789ab";
+    private static final String ASSOCIATED_DATA = "transaction";
+    private static final int CALLBACKS = 20000;
+
+    private final PayNotifyController controller = new PayNotifyController();
+    private final OrderService orderService = Mockito.mock(OrderService.class);
+    private final WeChatProperties weChatProperties = new WeChatProperties();
+    private byte[] body;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        //每次回调的info日志会淹没测量结果
+        LoggingSystem.get(getClass().getClassLoader()).setLogLevel("com.sky", LogLevel.WARN);
+
+        weChatProperties.setApiV3Key(API_V3_KEY);
+        ReflectionTestUtils.setField(controller, "orderService", orderService);
+        ReflectionTestUtils.setField(controller, "weChatProperties", weChatProperties);
+        body = buildBody();
+    }
+
+    @Test
+    public void paySuccessNotify() throws Exception {
+        MockHttpServletResponse response = callCurrent();
+        assertEquals(200, response.getStatus());
+        Mockito.verify(orderService).paySuccess("1700000000000000001", "4200001234202401011234567890");
+        callBefore();
+
+        BenchmarkUtil.report("pay notify, before (readLine + AesUtil per call)",
+                BenchmarkUtil.opsPerSecond(CALLBACKS, this::callBefore));
+        BenchmarkUtil.report("pay notify, current (stream parse + cipher pool)",
+                BenchmarkUtil.opsPerSecond(CALLBACKS, this::callCurrent));
+    }
+
+    private MockHttpServletResponse callCurrent() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.paySuccessNotify(newRequest(), response);
+        return response;
+    }
+
+    /**
+     * 优化前的实现
+     */
+    private void callBefore() throws Exception {
+        BufferedReader reader = newRequest().getReader();
+        StringBuilder result = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (result.length() > 0) {
+                result.append("\n");
+            }
+            result.append(line);
+        }
+
+        JSONObject resource = JSON.parseObject(result.toString()).getJSONObject("resource");
+        AesUtil aesUtil = new AesUtil(weChatProperties.getApiV3Key().getBytes(StandardCharsets.UTF_8));
+        String plainText = aesUtil.decryptToString(resource.getString("associated_data").getBytes(StandardCharsets.UTF_8),
+                resource.getString("nonce").getBytes(StandardCharsets.UTF_8), resource.getString("ciphertext"));
+        JSONObject jsonObject = JSON.parseObject(plainText);
+        orderService.paySuccess(jsonObject.getString("out_trade_no"), jsonObject.getString("transaction_id"));
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setStatus(200);
+        HashMap<Object, Object> map = new HashMap<>();
+        map.put("code", "SUCCESS");
+        map.put("message", "SUCCESS");
+        response.getOutputStream().write(JSONUtils.toJSONString(map).getBytes(StandardCharsets.UTF_8));
+        response.flushBuffer();
+    }
+
+    private MockHttpServletRequest newRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/notify/paySuccess");
+        request.setContentType("application/json");
+        request.setContent(body);
+        return request;
+    }
+
+    /**
+     * 按微信支付v3的格式构造回调报文：resource中是AEAD_AES_256_GCM加密的支付结果
+     */
+    private byte[] buildBody() throws Exception {
+        Map<String, Object> payResult = new HashMap<>();
+        payResult.put("out_trade_no", "1700000000000000001");
+        payResult.put("transaction_id", "4200001234202401011234567890");
+        payResult.put("trade_state", "SUCCESS");
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(API_V3_KEY.getBytes(StandardCharsets.UTF_8), "AES"),
+                new GCMParameterSpec(128, NONCE.getBytes(StandardCharsets.UTF_8)));
+        cipher.updateAAD(ASSOCIATED_DATA.getBytes(StandardCharsets.UTF_8));
+        byte[] ciphertext = cipher.doFinal(JSON.toJSONString(payResult).getBytes(StandardCharsets.UTF_8));
+
+        Map<String, Object> resource = new HashMap<>();
+        resource.put("algorithm", "AEAD_AES_256_GCM");
+        resource.put("ciphertext", Base64.getEncoder().encodeToString(ciphertext));
+        resource.put("nonce", NONCE);
+        resource.put("associated_data", ASSOCIATED_DATA);
+
+        Map<String, Object> notify = new HashMap<>();
+        notify.put("id", "EV-2018022511223320873");
+        notify.put("event_type", "TRANSACTION.SUCCESS");
+        notify.put("resource_type", "encrypt-resource");
+        notify.put("resource", resource);
+        return JSON.toJSONString(notify).getBytes(StandardCharsets.UTF_8);
+    }
+}
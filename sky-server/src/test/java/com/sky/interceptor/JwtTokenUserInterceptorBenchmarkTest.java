@@ -0,0 +1,101 @@
+package com.sky.interceptor;
+
+import com.sky.benchmark.BenchmarkUtil;
+import com.sky.cache.JwtTokenCache;
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.context.BaseContext;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.method.HandlerMethod;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 用户端jwt拦截器每个请求的开销：
+ * 优化前每次新建解析器并验签解析，复用解析器后仍要验签解析，当前实现同一令牌命中已校验缓存
+ */
+@Tag("benchmark")
+public class JwtTokenUserInterceptorBenchmarkTest {
+
+    private static final int REQUESTS = 200000;
+    private static final long USER_ID = 10086L;
+
+    private final JwtTokenUserInterceptor interceptor = new JwtTokenUserInterceptor();
+    private final JwtProperties jwtProperties = new JwtProperties();
+    private final MockHttpServletRequest request = new MockHttpServletRequest();
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+    private HandlerMethod handler;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        //拦截器每个请求的debug日志会淹没测量结果
+        LoggingSystem.get(getClass().getClassLoader()).setLogLevel("com.sky", LogLevel.WARN);
+
+        jwtProperties.setUserSecretKey("itheima");
+        jwtProperties.setUserTtl(7200000);
+        jwtProperties.setUserTokenName("authentication");
+        jwtProperties.setVerifiedCacheSize(10000);
+
+        JwtTokenCache jwtTokenCache = new JwtTokenCache();
+        ReflectionTestUtils.setField(jwtTokenCache, "jwtProperties", jwtProperties);
+        jwtTokenCache.init();
+        ReflectionTestUtils.setField(interceptor, "jwtProperties", jwtProperties);
+        ReflectionTestUtils.setField(interceptor, "jwtTokenCache", jwtTokenCache);
+
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(JwtClaimsConstant.USER_ID, USER_ID);
+        String token = JwtUtil.createJWT(jwtProperties.getUserSecretKey(), jwtProperties.getUserTtl(), claims);
+        request.addHeader(jwtProperties.getUserTokenName(), token);
+        handler = new HandlerMethod(this, getClass().getMethod("setUp"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        BaseContext.clear();
+    }
+
+    @Test
+    public void preHandle() throws Exception {
+        assertTrue(interceptor.preHandle(request, response, handler));
+        assertEquals(USER_ID, BaseContext.getCurrentId().longValue());
+        assertEquals(USER_ID, parseWithNewParser().longValue());
+
+        BenchmarkUtil.report("jwt, before (new parser per request)",
+                BenchmarkUtil.opsPerSecond(REQUESTS, this::parseWithNewParser));
+        BenchmarkUtil.report("jwt, shared parser (verify + parse per request)",
+                BenchmarkUtil.opsPerSecond(REQUESTS, this::parseWithSharedParser));
+        BenchmarkUtil.report("jwt, interceptor preHandle (verified cache)",
+                BenchmarkUtil.opsPerSecond(REQUESTS, () -> interceptor.preHandle(request, response, handler)));
+    }
+
+    /**
+     * 优化前的JwtUtil.parseJWT：每次新建解析器、重新取秘钥字节
+     */
+    private Long parseWithNewParser() {
+        Claims claims = Jwts.parser()
+                .setSigningKey(jwtProperties.getUserSecretKey().getBytes(StandardCharsets.UTF_8))
+                .parseClaimsJws(request.getHeader(jwtProperties.getUserTokenName()))
+                .getBody();
+        return Long.valueOf(claims.get(JwtClaimsConstant.USER_ID).toString());
+    }
+
+    private Long parseWithSharedParser() {
+        Claims claims = JwtUtil.parseJWT(jwtProperties.getUserSecretKey(), request.getHeader(jwtProperties.getUserTokenName()));
+        return Long.valueOf(claims.get(JwtClaimsConstant.USER_ID).toString());
+    }
+}
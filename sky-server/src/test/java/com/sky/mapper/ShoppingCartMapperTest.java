@@ -0,0 +1,103 @@
+package com.sky.mapper;
+
+import com.sky.entity.ShoppingCart;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 购物车原子加减（依赖唯一索引uk_user_item，需先执行db/shopping_cart_unique.sql）
+ * 需要可用的MySQL/Redis，并会清理USER_ID的购物车数据，只在 mvn test -Pintegration 时执行
+ */
+@Tag("integration")
+@SpringBootTest
+public class ShoppingCartMapperTest {
+
+    private static final long USER_ID = 999999999L;
+    private static final long DISH_ID = 1L;
+    private static final int TAPS = 64;
+
+    @Autowired
+    private ShoppingCartMapper shoppingCartMapper;
+
+    @BeforeEach
+    @AfterEach
+    public void clean() {
+        shoppingCartMapper.deleteByUserId(USER_ID);
+    }
+
+    /**
+     * 64次并发加购同一商品，最终只有一行且份数为64；口味null和''视为同一商品
+     * 再64次并发减购，最终该商品被删除
+     */
+    @Test
+    public void concurrentIncrementAndDecrement() throws Exception {
+        runConcurrently(i -> shoppingCartMapper.insertOrIncrement(ShoppingCart.builder()
+                .userId(USER_ID)
+                .dishId(DISH_ID)
+                .dishFlavor(i % 2 == 0 ? null : "")
+                .name("test")
+                .amount(BigDecimal.ONE)
+                .number(1)
+                .createTime(LocalDateTime.now())
+                .build()));
+
+        List<ShoppingCart> list = shoppingCartMapper.list(ShoppingCart.builder().userId(USER_ID).build());
+        assertEquals(1, list.size());
+        assertEquals(TAPS, list.get(0).getNumber().intValue());
+
+        runConcurrently(i -> {
+            ShoppingCart shoppingCart = ShoppingCart.builder()
+                    .userId(USER_ID)
+                    .dishId(DISH_ID)
+                    .dishFlavor(i % 2 == 0 ? "" : null)
+                    .build();
+            if (shoppingCartMapper.decrementNumber(shoppingCart) == 0) {
+                shoppingCartMapper.deleteIfLast(shoppingCart);
+            }
+        });
+
+        assertTrue(shoppingCartMapper.list(ShoppingCart.builder().userId(USER_ID).build()).isEmpty());
+    }
+
+    private interface Tap {
+        void run(int i);
+    }
+
+    private void runConcurrently(Tap tap) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(TAPS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < TAPS; i++) {
+                int index = i;
+                futures.add(pool.submit((Callable<Void>) () -> {
+                    start.await();
+                    tap.run(index);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.sky.service;
+
+import com.sky.benchmark.BenchmarkUtil;
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.mapper.DishFlavorMapper;
+import com.sky.mapper.DishMapper;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 菜品口味批量查询的基准：每个菜品查一次口味(N+1) 与 一条sql批量查询(listWithFlavor) 对比
+ * 需要可用的MySQL，会在不存在的分类下插入测试菜品并在结束后删除，只在 mvn test -Pintegration 时执行
+ */
+@Tag("integration")
+@SpringBootTest
+public class DishFlavorBenchmarkTest {
+
+    //测试菜品使用的分类id，不对应真实分类
+    private static final long CATEGORY_ID = 999999999L;
+    private static final int[] DISH_COUNTS = {10, 50, 200};
+    private static final int CALLS = 20;
+
+    @Autowired
+    private DishService dishService;
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private DishFlavorMapper dishFlavorMapper;
+
+    private final List<Long> dishIds = new ArrayList<>();
+
+    @AfterEach
+    public void clean() {
+        if (!dishIds.isEmpty()) {
+            dishFlavorMapper.deleteByDishIds(dishIds);
+            dishMapper.deleteByIds(dishIds);
+            dishIds.clear();
+        }
+    }
+
+    @Test
+    public void listWithFlavor() throws Exception {
+        for (int count : DISH_COUNTS) {
+            long categoryId = CATEGORY_ID - count;
+            insertDishes(categoryId, count);
+            Dish query = Dish.builder().categoryId(categoryId).status(StatusConstant.ENABLE).build();
+
+            assertEquals(count, listWithFlavorOneByOne(query).size());
+            assertEquals(count, dishService.listWithFlavor(query).size());
+
+            BenchmarkUtil.report("listWithFlavor N+1, dishes=" + count,
+                    BenchmarkUtil.opsPerSecond(CALLS, () -> listWithFlavorOneByOne(query)));
+            BenchmarkUtil.report("listWithFlavor batched, dishes=" + count,
+                    BenchmarkUtil.opsPerSecond(CALLS, () -> dishService.listWithFlavor(query)));
+        }
+    }
+
+    /**
+     * 优化前的实现：每个菜品查询一次口味
+     */
+    private List<DishVO> listWithFlavorOneByOne(Dish query) {
+        List<DishVO> dishVOList = new ArrayList<>();
+        for (Dish dish : dishMapper.list(query)) {
+            DishVO dishVO = new DishVO();
+            dishVO.setId(dish.getId());
+            dishVO.setName(dish.getName());
+            dishVO.setFlavors(dishFlavorMapper.getByDishId(dish.getId()));
+            dishVOList.add(dishVO);
+        }
+        return dishVOList;
+    }
+
+    private void insertDishes(long categoryId, int count) {
+        String prefix = UUID.randomUUID().toString().substring(0, 8);
+        List<DishFlavor> flavors = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Dish dish = Dish.builder()
+                    .name("benchmark_" + prefix + "_" + i)
+                    .categoryId(categoryId)
+                    .price(BigDecimal.TEN)
+                    .status(StatusConstant.ENABLE)
+                    .build();
+            dishMapper.insert(dish);
+            dishIds.add(dish.getId());
+            flavors.add(DishFlavor.builder().dishId(dish.getId()).name("辣度").value("[\"不辣\",\"微辣\",\"重辣\"]").build());
+            flavors.add(DishFlavor.builder().dishId(dish.getId()).name("温度").value("[\"热饮\",\"常温\"]").build());
+        }
+        dishFlavorMapper.insertBatch(flavors);
+    }
+}
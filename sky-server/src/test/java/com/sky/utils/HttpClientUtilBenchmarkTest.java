@@ -0,0 +1,97 @@
+package com.sky.utils;
+
+import com.sky.benchmark.BenchmarkUtil;
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HttpClientUtil连接池的收益：本地桩服务（内嵌Tomcat）上对比每次请求新建HttpClient（优化前）与共用连接池
+ * 桩服务是明文http，只体现TCP建连的开销；访问微信接口时还有TLS握手，差距会更大
+ */
+@Tag("benchmark")
+public class HttpClientUtilBenchmarkTest {
+
+    private static final byte[] RESPONSE = "{\"openid\":\"benchmark\"}".getBytes(StandardCharsets.UTF_8);
+    private static final int REQUESTS = 1000;
+    private static final int THREADS = 4;
+
+    private Tomcat tomcat;
+    private String url;
+
+    @BeforeEach
+    public void startServer() throws Exception {
+        //httpclient的debug日志（每个请求的报文）会淹没测量结果
+        LoggingSystem.get(getClass().getClassLoader()).setLogLevel("org.apache.http", LogLevel.WARN);
+
+        tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createTempDirectory("tomcat").toString());
+        tomcat.setPort(0);
+        tomcat.getConnector();
+        Context context = tomcat.addContext("", null);
+        Tomcat.addServlet(context, "jscode2session", new HttpServlet() {
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                response.setContentType("application/json");
+                response.setContentLength(RESPONSE.length);
+                response.getOutputStream().write(RESPONSE);
+            }
+        });
+        context.addServletMappingDecoded("/sns/jscode2session", "jscode2session");
+        tomcat.start();
+        url = "http://127.0.0.1:" + tomcat.getConnector().getLocalPort() + "/sns/jscode2session";
+    }
+
+    @AfterEach
+    public void stopServer() throws Exception {
+        tomcat.stop();
+        tomcat.destroy();
+    }
+
+    @Test
+    public void doGet() throws Exception {
+        Map<String, String> paramMap = Collections.singletonMap("js_code", "benchmark");
+        assertEquals(new String(RESPONSE, StandardCharsets.UTF_8), HttpClientUtil.doGet(url, paramMap));
+        assertEquals(new String(RESPONSE, StandardCharsets.UTF_8), doGetWithNewClient());
+
+        BenchmarkUtil.report("doGet, new client per call, 1 thread",
+                BenchmarkUtil.opsPerSecond(REQUESTS, this::doGetWithNewClient));
+        BenchmarkUtil.report("doGet, pooled client, 1 thread",
+                BenchmarkUtil.opsPerSecond(REQUESTS, () -> HttpClientUtil.doGet(url, paramMap)));
+        BenchmarkUtil.report("doGet, new client per call, " + THREADS + " threads",
+                BenchmarkUtil.opsPerSecond(THREADS, REQUESTS / THREADS, this::doGetWithNewClient));
+        BenchmarkUtil.report("doGet, pooled client, " + THREADS + " threads",
+                BenchmarkUtil.opsPerSecond(THREADS, REQUESTS / THREADS, () -> HttpClientUtil.doGet(url, paramMap)));
+        System.out.println("[benchmark] pool stats: " + HttpClientUtil.getPoolStats());
+    }
+
+    /**
+     * 优化前的实现：每次请求新建并关闭HttpClient，连接不复用
+     */
+    private String doGetWithNewClient() throws Exception {
+        try (CloseableHttpClient httpClient = HttpClients.createDefault();
+             CloseableHttpResponse response = httpClient.execute(new HttpGet(url + "?js_code=benchmark"))) {
+            return EntityUtils.toString(response.getEntity(), "UTF-8");
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.sky.utils;
+
+import com.sky.benchmark.BenchmarkUtil;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 订单号生成吞吐量
+ * 每毫秒4096个序列号，单个生成器的理论上限约为每秒409.6万个id，超过时nextId会等待下一毫秒
+ */
+@Tag("benchmark")
+public class SnowflakeIdGeneratorBenchmarkTest {
+
+    private static final int IDS = 2_000_000;
+    private static final int THREADS = 4;
+
+    @Test
+    public void nextId() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, 5000);
+        BenchmarkUtil.report("nextId, 1 thread", BenchmarkUtil.opsPerSecond(IDS, generator::nextId));
+        BenchmarkUtil.report("nextId, " + THREADS + " threads",
+                BenchmarkUtil.opsPerSecond(THREADS, IDS / THREADS, generator::nextId));
+        BenchmarkUtil.report("nextIdStr, 1 thread", BenchmarkUtil.opsPerSecond(IDS, generator::nextIdStr));
+        //优化前的订单号，仅作为参照（并发时会重复）
+        BenchmarkUtil.report("String.valueOf(currentTimeMillis), 1 thread",
+                BenchmarkUtil.opsPerSecond(IDS, () -> String.valueOf(System.currentTimeMillis())));
+    }
+}
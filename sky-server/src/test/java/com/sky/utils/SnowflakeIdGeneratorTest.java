@@ -0,0 +1,137 @@
+package com.sky.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnowflakeIdGeneratorTest {
+
+    private static final int THREADS = 16;
+    private static final int IDS_PER_THREAD = 100000;
+
+    /**
+     * 多线程并发生成，id不能重复，且每个线程内严格递增
+     */
+    @Test
+    public void concurrentIdsAreUniqueAndIncreasing() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, 5000);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(pool.submit((Callable<Void>) () -> {
+                    start.await();
+                    long previous = Long.MIN_VALUE;
+                    for (int j = 0; j < IDS_PER_THREAD; j++) {
+                        long id = generator.nextId();
+                        assertTrue(id > previous, "同一线程内id必须递增");
+                        assertTrue(ids.add(id), "id重复：" + id);
+                        previous = id;
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+    }
+
+    /**
+     * 同一毫秒序列号用完后等待时钟进入下一毫秒，而不是借用未来的时间戳
+     */
+    @Test
+    public void exhaustedSequenceWaitsForNextMillisecond() {
+        long base = System.currentTimeMillis();
+        //前5000次调用时钟停在base，之后才走到base+1
+        AtomicLong calls = new AtomicLong();
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, 5000) {
+            @Override
+            protected long currentTimeMillis() {
+                return calls.incrementAndGet() <= 5000 ? base : base + 1;
+            }
+        };
+
+        Set<Long> ids = new HashSet<>();
+        long previous = Long.MIN_VALUE;
+        for (int i = 0; i < 4097; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            assertTrue(ids.add(id));
+            //时间戳不能超前于时钟
+            assertTrue(SnowflakeIdGenerator.getTimestamp(id) <= (calls.get() <= 5000 ? base : base + 1));
+            previous = id;
+        }
+        //前4096个id用完了base这一毫秒，第4097个必须等到base+1
+        assertTrue(calls.get() > 5000);
+        assertEquals(base + 1, SnowflakeIdGenerator.getTimestamp(previous));
+    }
+
+    /**
+     * 持续超过每毫秒4096个的速度生成，不应被误判为时钟回拨
+     */
+    @Test
+    public void sustainedOverflowDoesNotLookLikeClockRollback() {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        AtomicLong calls = new AtomicLong();
+        //每10000次调用时钟才前进1毫秒，单毫秒内的请求远多于4096
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, 0) {
+            @Override
+            protected long currentTimeMillis() {
+                if (calls.incrementAndGet() % 10000 == 0) {
+                    return clock.incrementAndGet();
+                }
+                return clock.get();
+            }
+        };
+
+        long previous = Long.MIN_VALUE;
+        for (int i = 0; i < 50000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            assertTrue(SnowflakeIdGenerator.getTimestamp(id) <= clock.get());
+            previous = id;
+        }
+    }
+
+    /**
+     * 时钟小幅回拨时继续生成递增id，超过maxBackwardMillis时拒绝生成
+     */
+    @Test
+    public void clockRollback() {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, 5) {
+            @Override
+            protected long currentTimeMillis() {
+                return clock.get();
+            }
+        };
+
+        long first = generator.nextId();
+        clock.addAndGet(-3);
+        long second = generator.nextId();
+        assertTrue(second > first);
+
+        clock.addAndGet(-10);
+        assertThrows(IllegalStateException.class, generator::nextId);
+    }
+}